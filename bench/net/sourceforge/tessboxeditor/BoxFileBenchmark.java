@@ -0,0 +1,71 @@
+/**
+ * Copyright @ 2016 Quan Nguyen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package net.sourceforge.tessboxeditor;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.sourceforge.tessboxeditor.datamodel.TessBoxCollection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks parsing and formatting of box data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true", "-Dprism.order=sw"})
+public class BoxFileBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int boxCount;
+
+    BoxEditorController controller;
+    List<BufferedImage> imageList;
+    String boxString;
+    List<TessBoxCollection> boxPages;
+
+    @Setup
+    public void setUp() throws IOException {
+        controller = new BoxEditorController();
+        imageList = SyntheticBoxes.imageList(boxCount);
+        boxString = SyntheticBoxes.boxString(boxCount);
+        boxPages = controller.parseBoxString(boxString, imageList);
+    }
+
+    @Benchmark
+    public List<TessBoxCollection> parseBoxString() throws IOException {
+        return controller.parseBoxString(boxString, imageList);
+    }
+
+    @Benchmark
+    public String formatOutputString() {
+        return controller.formatOutputString(imageList, boxPages);
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright @ 2016 Quan Nguyen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package net.sourceforge.tessboxeditor;
+
+import java.awt.font.TextAttribute;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+import javafx.scene.text.Font;
+import net.sourceforge.tessboxeditor.TextPageRenderer.RenderedPage;
+import net.sourceforge.tessboxeditor.datamodel.TessBox;
+import net.sourceforge.tessboxeditor.utilities.ImageUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmarks per-pixel image operations on a letter-size page of 12 pt text,
+ * at 300 and 600 DPI, grayscale (anti-aliased) and binary. Run via
+ * <code>main</code>, or with <code>-prof gc</code>, to see allocation rates
+ * alongside throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true", "-Dprism.order=sw"})
+public class ImageBenchmark {
+
+    private static final String TEXT = "The quick brown fox jumps over the lazy dog. "
+            + "Pack my box with five dozen liquor jugs! 0123456789 ";
+    private static final int NOISE_AMOUNT = 30;
+
+    @Param({"300", "600"})
+    int dpi;
+
+    @Param({"gray", "binary"})
+    String type;
+
+    TextPageRenderer renderer;
+    List<String> graphemes;
+    BufferedImage page;
+    List<Bounds> glyphBounds;
+    Image glyphImage;
+    TiffBoxGeneratorFX generator;
+    int next;
+
+    @Setup
+    public void setUp() {
+        int width = dpi * 17 / 2; // 8.5 x 11 inches
+        int height = dpi * 11;
+        boolean gray = type.equals("gray");
+        renderer = new TextPageRenderer(new java.awt.Font("Serif", java.awt.Font.PLAIN, 1).deriveFont(12f * dpi / 72),
+                TextAttribute.TRACKING_LOOSE, width, height, dpi / 3, dpi / 25, gray);
+
+        // about a page of text
+        graphemes = new ArrayList<String>();
+        while (graphemes.size() < 3500) {
+            for (char c : TEXT.toCharArray()) {
+                graphemes.add(String.valueOf(c));
+            }
+        }
+        RenderedPage rendered = renderer.render(graphemes).get(0);
+        page = rendered.getImage();
+
+        // glyph boxes, loosened by a pixel on each side for tightening
+        glyphBounds = new ArrayList<Bounds>();
+        for (TessBox box : rendered.getBoxes().toList()) {
+            Rectangle2D r = box.getRect();
+            if (r.getWidth() > 0 && !box.getCharacter().trim().isEmpty()) {
+                glyphBounds.add(new BoundingBox(r.getMinX() - 1, r.getMinY() - 1, r.getWidth() + 2, r.getHeight() + 2));
+            }
+        }
+        glyphImage = ImageUtils.getSubimage(page, rect(glyphBounds.get(0)), BoxEditorController.iconMargin);
+        generator = new TiffBoxGeneratorFX(Collections.<List<String>>emptyList(), Font.font("Serif", 12), width, height);
+    }
+
+    private static Rectangle2D rect(Bounds bounds) {
+        return new Rectangle2D(bounds.getMinX(), bounds.getMinY(), bounds.getWidth(), bounds.getHeight());
+    }
+
+    @Benchmark
+    public BufferedImage addNoise() {
+        return ImageUtils.addNoise(page, NOISE_AMOUNT, 42);
+    }
+
+    @Benchmark
+    public Image getSubimage() {
+        Bounds bounds = glyphBounds.get(next++ % glyphBounds.size());
+        return ImageUtils.getSubimage(page, rect(bounds), BoxEditorController.iconMargin);
+    }
+
+    @Benchmark
+    public Image resample() {
+        return ImageUtils.resample(glyphImage, BoxEditorController.scaleFactor);
+    }
+
+    /**
+     * Renders a page of text; this replaced the redraw of snapshots.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<RenderedPage> render() {
+        return renderer.render(graphemes);
+    }
+
+    /**
+     * Tightens the boxes of all glyphs on the page.
+     */
+    @Benchmark
+    public void tightenBoundingBox(Blackhole bh) {
+        for (Bounds bounds : glyphBounds) {
+            bh.consume(generator.tightenBoundingBox(bounds, page));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ImageBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
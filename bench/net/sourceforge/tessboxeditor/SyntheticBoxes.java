@@ -0,0 +1,129 @@
+/**
+ * Copyright @ 2016 Quan Nguyen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package net.sourceforge.tessboxeditor;
+
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.List;
+import javafx.geometry.Rectangle2D;
+import net.sourceforge.tessboxeditor.datamodel.TessBox;
+import net.sourceforge.tessboxeditor.datamodel.TessBoxCollection;
+
+/**
+ * Synthetic box data for benchmarks: glyphs laid out in lines on pages, with
+ * every fifth glyph a combining mark placed over the preceding base letter.
+ */
+public class SyntheticBoxes {
+
+    public static final int BOXES_PER_LINE = 100;
+    public static final int LINES_PER_PAGE = 50;
+    public static final int BOXES_PER_PAGE = BOXES_PER_LINE * LINES_PER_PAGE;
+    public static final int GLYPH_WIDTH = 20;
+    public static final int GLYPH_HEIGHT = 30;
+    public static final int LINE_HEIGHT = 40;
+    public static final int PAGE_HEIGHT = LINES_PER_PAGE * LINE_HEIGHT + 100;
+    private static final String BASES = "abcdeghiklmnopqrstuvxy";
+    private static final String MARKS = "\u0300\u0301\u0303\u0309\u0323"; // Vietnamese tone marks
+    public static final String COMBINING_SYMBOLS = MARKS + ";"; // appending symbols only
+
+    private SyntheticBoxes() {
+    }
+
+    /**
+     * Gets character of the i-th glyph.
+     */
+    static String character(int i) {
+        return i % 5 == 4 ? String.valueOf(MARKS.charAt(i % MARKS.length())) : String.valueOf(BASES.charAt(i % BASES.length()));
+    }
+
+    /**
+     * Gets bounds of the i-th glyph, in screen coordinates.
+     */
+    static Rectangle2D rect(int i) {
+        int inPage = i % BOXES_PER_PAGE;
+        int line = inPage / BOXES_PER_LINE;
+        int col = inPage % BOXES_PER_LINE;
+        double x = 50 + col * GLYPH_WIDTH;
+        double y = 50 + line * LINE_HEIGHT;
+        if (i % 5 == 4) {
+            // mark sits above the previous base glyph
+            return new Rectangle2D(x - GLYPH_WIDTH + 4, y - 8, GLYPH_WIDTH - 8, 8);
+        }
+        return new Rectangle2D(x, y, GLYPH_WIDTH - 2, GLYPH_HEIGHT);
+    }
+
+    /**
+     * Gets number of pages needed for a number of boxes.
+     *
+     * @param boxCount number of boxes
+     * @return page count
+     */
+    public static int pageCount(int boxCount) {
+        return Math.max(1, (boxCount + BOXES_PER_PAGE - 1) / BOXES_PER_PAGE);
+    }
+
+    /**
+     * Gets page images to go with the box data. Only their heights matter, so
+     * pages share one tiny image.
+     *
+     * @param boxCount number of boxes
+     * @return page images
+     */
+    public static List<BufferedImage> imageList(int boxCount) {
+        return Collections.nCopies(pageCount(boxCount), new BufferedImage(1, PAGE_HEIGHT, BufferedImage.TYPE_BYTE_BINARY));
+    }
+
+    /**
+     * Generates box file content in Tess 3.0x format.
+     *
+     * @param boxCount number of boxes
+     * @return box data
+     */
+    public static String boxString(int boxCount) {
+        StringBuilder sb = new StringBuilder(boxCount * 20);
+        for (int i = 0; i < boxCount; i++) {
+            Rectangle2D r = rect(i);
+            int page = i / BOXES_PER_PAGE;
+            // flip to box file coordinates, with (0,0) at the bottom-left
+            sb.append(character(i)).append(' ')
+                    .append((int) r.getMinX()).append(' ')
+                    .append(PAGE_HEIGHT - (int) r.getMaxY()).append(' ')
+                    .append((int) r.getMaxX()).append(' ')
+                    .append(PAGE_HEIGHT - (int) r.getMinY()).append(' ')
+                    .append(page).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Generates a single collection holding all boxes, one page stacked below
+     * another.
+     *
+     * @param boxCount number of boxes
+     * @return boxes
+     */
+    public static TessBoxCollection collection(int boxCount) {
+        TessBoxCollection boxCol = new TessBoxCollection();
+        for (int i = 0; i < boxCount; i++) {
+            Rectangle2D r = rect(i);
+            double offset = (double) (i / BOXES_PER_PAGE) * PAGE_HEIGHT;
+            boxCol.add(new TessBox(character(i), new Rectangle2D(r.getMinX(), r.getMinY() + offset, r.getWidth(), r.getHeight()), (short) 0));
+        }
+        boxCol.setCombiningSymbols(COMBINING_SYMBOLS);
+        boxCol.setModified(false);
+        return boxCol;
+    }
+}
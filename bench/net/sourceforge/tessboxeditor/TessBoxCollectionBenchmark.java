@@ -0,0 +1,113 @@
+/**
+ * Copyright @ 2016 Quan Nguyen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package net.sourceforge.tessboxeditor;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javafx.geometry.Rectangle2D;
+import net.sourceforge.tessboxeditor.datamodel.TessBox;
+import net.sourceforge.tessboxeditor.datamodel.TessBoxCollection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks operations on a box collection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class TessBoxCollectionBenchmark {
+
+    private static final int SELECTED = 100;
+
+    @Param({"10000", "100000", "1000000"})
+    int boxCount;
+
+    TessBoxCollection boxCol;
+    double[] hitX;
+    double[] hitY;
+    int hit;
+
+    @Setup
+    public void setUp() {
+        boxCol = SyntheticBoxes.collection(boxCount);
+        // select some boxes spread over the collection
+        List<TessBox> boxes = boxCol.toList();
+        for (int i = 0; i < SELECTED; i++) {
+            boxes.get((int) ((long) i * boxes.size() / SELECTED)).setSelected(true);
+        }
+        // points at the centers of boxes spread over the collection
+        hitX = new double[1024];
+        hitY = new double[1024];
+        for (int i = 0; i < hitX.length; i++) {
+            Rectangle2D r = boxes.get((int) ((long) i * 7919 % boxes.size())).getRect();
+            hitX[i] = r.getMinX() + r.getWidth() / 2;
+            hitY[i] = r.getMinY() + r.getHeight() / 2;
+        }
+    }
+
+    @Benchmark
+    public TessBox hitObject() {
+        int i = hit++ & (hitX.length - 1);
+        return boxCol.hitObject(hitX[i], hitY[i]);
+    }
+
+    @Benchmark
+    public List<TessBox> getSelectedBoxes() {
+        return boxCol.getSelectedBoxes();
+    }
+
+    @Benchmark
+    public List<String[]> getTableDataList() {
+        return boxCol.getTableDataList();
+    }
+
+    /**
+     * Combining modifies the collection, so each invocation gets a fresh one.
+     */
+    @State(Scope.Thread)
+    public static class Uncombined {
+
+        TessBoxCollection boxCol;
+
+        @Setup(Level.Invocation)
+        public void setUp(TessBoxCollectionBenchmark benchmark) {
+            boxCol = SyntheticBoxes.collection(benchmark.boxCount);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public TessBoxCollection combineBoxes(Uncombined state) {
+        state.boxCol.combineBoxes();
+        return state.boxCol;
+    }
+}
@@ -0,0 +1,428 @@
+/**
+ * Copyright @ 2016 Quan Nguyen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package net.sourceforge.tessboxeditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import net.sourceforge.tessboxeditor.datamodel.BoxFileReader;
+import net.sourceforge.tessboxeditor.datamodel.TessBox;
+import net.sourceforge.tessboxeditor.utilities.EditDistance;
+import net.sourceforge.tessboxeditor.utilities.ImagePageList;
+import net.sourceforge.vietocr.OCRImages;
+
+/**
+ * Scores OCR output against ground truth reconstructed from box files. Texts
+ * are compared with runs of whitespace collapsed to a single space. Character
+ * error rate (CER) and word error rate (WER) are edit distances relative to
+ * the length of the ground truth. Errors are also tallied in a confusion
+ * matrix of expected against recognized characters.
+ */
+public class AccuracyEvaluator {
+
+    static final String[] IMAGE_EXTENSIONS = {".tif", ".tiff", ".png", ".jpg", ".jpeg", ".bmp"};
+    private static final int TOP_CONFUSIONS = 30;
+
+    /**
+     * Scores of a page.
+     */
+    public static class PageScore {
+
+        private final String name;
+        private final int page;
+        private final int charErrors;
+        private final int charCount;
+        private final int wordErrors;
+        private final int wordCount;
+
+        PageScore(String name, int page, int charErrors, int charCount, int wordErrors, int wordCount) {
+            this.name = name;
+            this.page = page;
+            this.charErrors = charErrors;
+            this.charCount = charCount;
+            this.wordErrors = wordErrors;
+            this.wordCount = wordCount;
+        }
+
+        /**
+         * @return the image name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the page index
+         */
+        public int getPage() {
+            return page;
+        }
+
+        /**
+         * @return character error rate
+         */
+        public double getCharacterErrorRate() {
+            return rate(charErrors, charCount);
+        }
+
+        /**
+         * @return word error rate
+         */
+        public double getWordErrorRate() {
+            return rate(wordErrors, wordCount);
+        }
+    }
+
+    private final List<PageScore> pageScores = new ArrayList<PageScore>();
+    // expected -> recognized -> count; an empty string stands for a gap
+    private final Map<String, Map<String, Integer>> confusions = new HashMap<String, Map<String, Integer>>();
+
+    /**
+     * Pages of an image file queued for recognition.
+     */
+    private static class PendingFile {
+
+        final String name;
+        final ImagePageList pages;
+        final List<Future<String>> results;
+        final List<String> truths; // per page; missing for pages without boxes
+
+        PendingFile(String name, ImagePageList pages, List<Future<String>> results, List<String> truths) {
+            this.name = name;
+            this.pages = pages;
+            this.results = results;
+            this.truths = truths;
+        }
+
+        void close() {
+            for (Future<String> result : results) {
+                result.cancel(true);
+            }
+            pages.close();
+        }
+    }
+
+    /**
+     * Recognizes the pages of images in parallel and scores those with
+     * ground truth, i.e., with a box file of the same base name. Only a few
+     * more files than there are OCR workers are open at a time, each being
+     * closed once its pages are done, so that whole directories can be
+     * evaluated.
+     *
+     * @param imageFiles image files
+     * @param ocrEngine OCR engine
+     * @param progress receiver of the number of files done and of the total,
+     * called on the calling thread; may be null
+     * @return recognized text of all pages
+     * @throws Exception
+     */
+    public String evaluate(List<File> imageFiles, OCRImages ocrEngine, BiConsumer<Integer, Integer> progress) throws Exception {
+        int window = ocrEngine.getThreadCount() + 1; // keep workers busy across file boundaries
+        Deque<PendingFile> inFlight = new ArrayDeque<PendingFile>();
+        StringBuilder sb = new StringBuilder();
+        try {
+            int next = 0;
+            for (int done = 0; done < imageFiles.size(); done++) {
+                // pages are decoded by the OCR workers
+                while (next < imageFiles.size() && inFlight.size() < window) {
+                    File imageFile = imageFiles.get(next++);
+                    ImagePageList pages = new ImagePageList(imageFile);
+                    PendingFile file = new PendingFile(imageFile.getName(), pages, new ArrayList<Future<String>>(), new ArrayList<String>());
+                    inFlight.add(file);
+                    file.results.addAll(ocrEngine.submit(pages));
+                    file.truths.addAll(readGroundTruth(getBoxFile(imageFile), pages));
+                }
+
+                PendingFile file = inFlight.peek();
+                for (int i = 0; i < file.results.size(); i++) {
+                    String text;
+                    try {
+                        text = file.results.get(i).get();
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        throw cause instanceof Exception ? (Exception) cause : e;
+                    }
+                    sb.append(text);
+                    if (i < file.truths.size()) {
+                        evaluatePage(file.name, i, file.truths.get(i), text);
+                    }
+                }
+                inFlight.remove().close();
+                if (progress != null) {
+                    progress.accept(done + 1, imageFiles.size());
+                }
+            }
+            return sb.toString();
+        } finally {
+            for (PendingFile file : inFlight) {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Scores a page and adds its errors to the confusion matrix. Thread-safe.
+     *
+     * @param name image name
+     * @param page page index
+     * @param truth ground truth text
+     * @param ocrText recognized text
+     * @return page score
+     */
+    public PageScore evaluatePage(String name, int page, String truth, String ocrText) {
+        int[] ref = normalize(truth).codePoints().toArray();
+        int[] hyp = normalize(ocrText).codePoints().toArray();
+        EditDistance.Alignment chars = EditDistance.align(ref, hyp);
+
+        Map<String, Integer> wordIds = new HashMap<String, Integer>();
+        int[] refWords = toWordIds(truth, wordIds);
+        int[] hypWords = toWordIds(ocrText, wordIds);
+        EditDistance.Alignment words = EditDistance.align(refWords, hypWords);
+
+        PageScore score = new PageScore(name, page, chars.getDistance(), ref.length, words.getDistance(), refWords.length);
+        synchronized (this) {
+            pageScores.add(score);
+            for (int k = 0; k < chars.size(); k++) {
+                int i = chars.getRefIndex(k);
+                int j = chars.getHypIndex(k);
+                if (i >= 0 && j >= 0 && ref[i] == hyp[j]) {
+                    continue;
+                }
+                String expected = i >= 0 ? new String(ref, i, 1) : "";
+                String actual = j >= 0 ? new String(hyp, j, 1) : "";
+                confusions.computeIfAbsent(expected, key -> new HashMap<String, Integer>()).merge(actual, 1, Integer::sum);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * @return scores of the pages evaluated so far
+     */
+    public synchronized List<PageScore> getPageScores() {
+        return new ArrayList<PageScore>(pageScores);
+    }
+
+    /**
+     * @return character error rate over all pages
+     */
+    public synchronized double getCharacterErrorRate() {
+        int errors = 0, count = 0;
+        for (PageScore score : pageScores) {
+            errors += score.charErrors;
+            count += score.charCount;
+        }
+        return rate(errors, count);
+    }
+
+    /**
+     * @return word error rate over all pages
+     */
+    public synchronized double getWordErrorRate() {
+        int errors = 0, count = 0;
+        for (PageScore score : pageScores) {
+            errors += score.wordErrors;
+            count += score.wordCount;
+        }
+        return rate(errors, count);
+    }
+
+    /**
+     * Gets the confusion matrix, limited to errors.
+     *
+     * @return expected character to recognized character to count; an empty
+     * string stands for a missing or extra character
+     */
+    public synchronized Map<String, Map<String, Integer>> getConfusions() {
+        Map<String, Map<String, Integer>> copy = new HashMap<String, Map<String, Integer>>();
+        for (Map.Entry<String, Map<String, Integer>> entry : confusions.entrySet()) {
+            copy.put(entry.getKey(), new HashMap<String, Integer>(entry.getValue()));
+        }
+        return copy;
+    }
+
+    /**
+     * Gets a report of overall and per-page scores and of the most frequent
+     * confusions.
+     *
+     * @return report
+     */
+    public synchronized String getReport() {
+        StringBuilder sb = new StringBuilder("** Accuracy **\n");
+        sb.append(String.format("Pages: %d%nCER: %.2f%%%nWER: %.2f%%%n", pageScores.size(), getCharacterErrorRate() * 100, getWordErrorRate() * 100));
+
+        List<PageScore> sorted = new ArrayList<PageScore>(pageScores);
+        sorted.sort((a, b) -> a.name.equals(b.name) ? Integer.compare(a.page, b.page) : a.name.compareTo(b.name));
+        sb.append("\nPage scores (CER, WER):\n");
+        for (PageScore score : sorted) {
+            sb.append(String.format("%s [%d]\t%.2f%%\t%.2f%%%n", score.name, score.page + 1, score.getCharacterErrorRate() * 100, score.getWordErrorRate() * 100));
+        }
+
+        List<Object[]> pairs = new ArrayList<Object[]>();
+        for (Map.Entry<String, Map<String, Integer>> entry : confusions.entrySet()) {
+            for (Map.Entry<String, Integer> actual : entry.getValue().entrySet()) {
+                pairs.add(new Object[]{entry.getKey(), actual.getKey(), actual.getValue()});
+            }
+        }
+        pairs.sort((a, b) -> Integer.compare((Integer) b[2], (Integer) a[2]));
+        sb.append("\nMost frequent confusions (expected -> recognized):\n");
+        for (Object[] pair : pairs.subList(0, Math.min(TOP_CONFUSIONS, pairs.size()))) {
+            sb.append(String.format("%s -> %s\t%d%n", display((String) pair[0]), display((String) pair[1]), (Integer) pair[2]));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Lists the images of a directory that have ground truth.
+     *
+     * @param dir directory
+     * @return image files with box files, sorted by name
+     */
+    public static List<File> listImageFiles(File dir) {
+        List<File> imageFiles = new ArrayList<File>();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                if (isImageFile(file) && getBoxFile(file) != null) {
+                    imageFiles.add(file);
+                }
+            }
+        }
+        return imageFiles;
+    }
+
+    /**
+     * Gets the box file of an image.
+     *
+     * @param imageFile image file
+     * @return box file, or null if none
+     */
+    public static File getBoxFile(File imageFile) {
+        String name = imageFile.getName();
+        int dot = name.lastIndexOf('.');
+        File boxFile = new File(imageFile.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + ".box");
+        return boxFile.isFile() ? boxFile : null;
+    }
+
+    static boolean isImageFile(File file) {
+        String name = file.getName().toLowerCase();
+        for (String ext : IMAGE_EXTENSIONS) {
+            if (name.endsWith(ext)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reconstructs the text of each page from a box file. Tab boxes, which
+     * mark line ends, become newlines. Box files without space or tab boxes,
+     * as made for the legacy engine, get word and line breaks inferred from
+     * gaps between boxes.
+     *
+     * @param boxFile box file; may be null
+     * @param pages page images, for their heights
+     * @return text of each page; empty if there is no box file
+     * @throws IOException
+     */
+    static List<String> readGroundTruth(File boxFile, ImagePageList pages) throws IOException {
+        List<String> truths = new ArrayList<String>();
+        if (boxFile == null) {
+            return truths;
+        }
+        try (BoxFileReader reader = new BoxFileReader(boxFile)) {
+            for (int i = 0; i < pages.size(); i++) {
+                truths.add(toText(reader.readPage(pages.getHeight(i)).toList()));
+            }
+        }
+        return truths;
+    }
+
+    static String toText(List<TessBox> boxes) {
+        boolean delimited = false;
+        for (TessBox box : boxes) {
+            String chrs = box.getCharacter();
+            if (chrs.equals(" ") || chrs.equals("\t")) {
+                delimited = true;
+                break;
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        TessBox prev = null;
+        for (TessBox box : boxes) {
+            String chrs = box.getCharacter();
+            if (chrs.equals("\t")) {
+                sb.append('\n');
+            } else {
+                if (!delimited && prev != null) {
+                    double gap = box.getRect().getMinX() - prev.getRect().getMaxX();
+                    if (gap < 0 && box.getRect().getMinY() >= prev.getRect().getMaxY()) {
+                        sb.append('\n'); // next line
+                    } else if (gap > Math.max(box.getRect().getHeight(), prev.getRect().getHeight()) * 0.4) {
+                        sb.append(' ');
+                    }
+                }
+                sb.append(chrs);
+            }
+            prev = box;
+        }
+        return sb.toString();
+    }
+
+    private static String normalize(String text) {
+        return text.trim().replaceAll("\\s+", " ");
+    }
+
+    private static int[] toWordIds(String text, Map<String, Integer> wordIds) {
+        String normalized = normalize(text);
+        if (normalized.isEmpty()) {
+            return new int[0];
+        }
+        String[] words = normalized.split(" ");
+        int[] ids = new int[words.length];
+        for (int i = 0; i < words.length; i++) {
+            Integer id = wordIds.get(words[i]);
+            if (id == null) {
+                id = wordIds.size();
+                wordIds.put(words[i], id);
+            }
+            ids[i] = id;
+        }
+        return ids;
+    }
+
+    private static String display(String chrs) {
+        if (chrs.isEmpty()) {
+            return "\u2205"; // empty set sign for a gap
+        }
+        return chrs.equals(" ") ? "\u2423" : chrs; // open box for a space
+    }
+
+    private static double rate(int errors, int count) {
+        return count == 0 ? (errors == 0 ? 0 : 1) : (double) errors / count;
+    }
+}
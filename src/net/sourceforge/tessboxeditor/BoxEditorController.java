@@ -16,16 +16,21 @@
 package net.sourceforge.tessboxeditor;
 
 import java.awt.image.BufferedImage;
-import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -38,7 +43,6 @@ import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -48,7 +52,6 @@ import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
 import javafx.concurrent.Task;
-import javafx.embed.swing.SwingFXUtils;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.fxml.FXML;
@@ -79,9 +82,10 @@ import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.stage.Stage;
 
-import net.sourceforge.tess4j.util.ImageIOHelper;
 import net.sourceforge.tessboxeditor.control.ImageCanvas;
 import net.sourceforge.tessboxeditor.control.IncrementHandler;
+import net.sourceforge.tessboxeditor.datamodel.BoxFileReader;
+import net.sourceforge.tessboxeditor.datamodel.BoxFileWriter;
 import net.sourceforge.tessboxeditor.datamodel.TessBox;
 import net.sourceforge.tessboxeditor.datamodel.TessBoxCollection;
 import net.sourceforge.tessboxeditor.utilities.*;
@@ -141,6 +145,8 @@ public class BoxEditorController implements Initializable {
     @FXML
     protected Tab tabBoxView;
     @FXML
+    private Tab tabBoxData;
+    @FXML
     protected ImageCanvas imageCanvas;
     @FXML
     private ScrollPane scrollPaneImage;
@@ -166,7 +172,7 @@ public class BoxEditorController implements Initializable {
     private TableColumn<TessBox, Integer> tcNum;
 
     private static final String IMAGE_PATTERN = "([^\\s]+(\\.(?i)(png|tif|tiff))$)";
-    public static final String WORDSTR = "WordStr";
+    public static final String WORDSTR = BoxFileReader.WORDSTR;
     protected ResourceBundle bundle;
     final Preferences prefs = MainController.prefs;
 
@@ -179,6 +185,12 @@ public class BoxEditorController implements Initializable {
     protected List<BufferedImage> imageList;
     private boolean isTess2_0Format;
     private boolean isWordStrFormat;
+    private String lineSeparator; // of the loaded box file, if any
+    private boolean isWellFormed;
+    private boolean boxDataStale;
+    private File savedBoxFile; // box file as last loaded or saved
+    private long[] savedPageOffsets; // page byte ranges in savedBoxFile
+    private long savedSize, savedTime;
     private BooleanProperty boxChangedProp;
     protected boolean tableSelectAction;
     static final String EOL = System.getProperty("line.separator");
@@ -192,7 +204,7 @@ public class BoxEditorController implements Initializable {
     protected static int fixedMinColWidth = 50;
     protected static int fixedMaxColWidth = 60;
 
-    Image image;
+    BufferedImage image;
 
     private final StringProperty fontFamily = new SimpleStringProperty(Font.getDefault().getFamily());
     private final IntegerProperty fontSize = new SimpleIntegerProperty((int) Font.getDefault().getSize());
@@ -219,6 +231,13 @@ public class BoxEditorController implements Initializable {
         boxPages = new ArrayList<TessBoxCollection>();
         filterIndex = prefs.getInt("filterIndex", 0);
 
+        imageCanvas.setScrollPane(scrollPaneImage);
+        tabBoxData.setOnSelectionChanged(e -> {
+            if (tabBoxData.isSelected()) {
+                refreshBoxData();
+            }
+        });
+
         if (MainController.LINUX) {
             stackPaneBoxView.setStyle("-fx-background-color: LightGray;");
         }
@@ -250,9 +269,10 @@ public class BoxEditorController implements Initializable {
        
         tfCharacter.focusedProperty().addListener((obs, wasFocused, isNowFocused) -> {
             if (!isNowFocused && !this.btnConvert.isFocused()) {
-                if (boxes != null && boxes.getSelectedBoxes().size() == 1) {
+                TessBox selectedBox = boxes != null ? boxes.getSelectedBox() : null;
+                if (selectedBox != null) {
                     String str = tfCharacter.getText();
-                    boxes.getSelectedBoxes().get(0).setCharacter(str);
+                    selectedBox.setCharacter(str);
                     tfChar.setText(str);
                     tfCodepointValue.setText(Utils.toHex(str));
                 }
@@ -328,7 +348,7 @@ public class BoxEditorController implements Initializable {
                         box.setSelected(true);
                         scrollRectToVisible(scrollPaneImage, box.getRect());
                     }
-                    imageCanvas.paint();
+                    imageCanvas.repaintSelection();
 
                     if (tableView.getSelectionModel().getSelectedIndices().size() == 1) {
                         enableReadout(true);
@@ -358,7 +378,7 @@ public class BoxEditorController implements Initializable {
                     }
                 } else {
                     boxes.deselectAll();
-                    imageCanvas.paint();
+                    imageCanvas.repaintSelection();
                     enableReadout(false);
                     tableSelectAction = true;
                     resetReadout();
@@ -371,7 +391,7 @@ public class BoxEditorController implements Initializable {
                     TessBox box = boxes.toList().get(lastSelectedIndex);
                     // deselect box
                     box.setSelected(false);
-                    imageCanvas.paint();
+                    imageCanvas.repaintSelection();
                 }
 
                 tfChar.setText(null);
@@ -403,21 +423,15 @@ public class BoxEditorController implements Initializable {
         tcWidth.setCellValueFactory(new PropertyValueFactory<TessBox, Integer>("width"));
         tcHeight.setCellValueFactory(new PropertyValueFactory<TessBox, Integer>("height"));
 
-        tcNum.setCellValueFactory(column -> new ReadOnlyObjectWrapper<Integer>(tableView.getItems().indexOf(column.getValue()) + 1));
-        // alternatively
-//        tcNum.setCellFactory(new Callback<TableColumn, TableCell>() {
-//            @Override
-//            public TableCell call(TableColumn p) {
-//                return new TableCell() {
-//                    @Override
-//                    public void updateItem(Object item, boolean empty) {
-//                        super.updateItem(item, empty);
-//                        setGraphic(null);
-//                        setText(empty ? null : String.valueOf(getIndex() + 1));
-//                    }
-//                };
-//            }
-//        });
+        // row number is the row index; no lookup of the item in the list
+        tcNum.setCellFactory(column -> new TableCell<TessBox, Integer>() {
+            @Override
+            protected void updateItem(Integer item, boolean empty) {
+                super.updateItem(item, empty);
+                setGraphic(null);
+                setText(empty ? null : String.valueOf(getIndex() + 1));
+            }
+        });
 
         spBoxImage.setOnDragOver(new EventHandler<DragEvent>() {
             @Override
@@ -566,9 +580,10 @@ public class BoxEditorController implements Initializable {
                 handleAction(new ActionEvent(tfCharacter, null));
             }
         } else if (event.getSource() == tfCharacter) {
-            if (boxes.getSelectedBoxes().size() == 1) {
+            TessBox selectedBox = boxes.getSelectedBox();
+            if (selectedBox != null) {
                 String str = tfCharacter.getText();
-                boxes.getSelectedBoxes().get(0).setCharacter(str);
+                selectedBox.setCharacter(str);
                 tfChar.setText(str);
                 tfCodepointValue.setText(Utils.toHex(str));
                 boxChangedProp.set(true);
@@ -577,7 +592,7 @@ public class BoxEditorController implements Initializable {
             if (imageList == null) {
                 return;
             }
-            int pageHeight = imageList.get(imageIndex).getHeight();
+            int pageHeight = ImagePageList.getHeight(imageList, imageIndex);
             String[] items = this.tfFind.getText().split("\\s+");
             try {
                 TessBox findBox;
@@ -603,7 +618,7 @@ public class BoxEditorController implements Initializable {
                 }
 
                 if (findBox != null) {
-                    int index = boxes.toList().indexOf(findBox);
+                    int index = boxes.indexOf(findBox);
                     this.tableView.getSelectionModel().clearAndSelect(index);
                     this.tableView.scrollTo(index > 10 ? index - 4 : index);
                 } else {
@@ -621,10 +636,7 @@ public class BoxEditorController implements Initializable {
         if (tableSelectAction || boxes == null) {
             return;
         }
-        TessBox selectedBox = null;
-        if (boxes.getSelectedBoxes().size() == 1) {
-            selectedBox = boxes.getSelectedBoxes().get(0);
-        }
+        TessBox selectedBox = boxes.getSelectedBox();
         if (selectedBox != null) {
             int x = selectedBox.getX();
             int y = selectedBox.getY();
@@ -645,7 +657,7 @@ public class BoxEditorController implements Initializable {
             if (!selectedBox.getRect().equals(newRect)) {
                 selectedBox.setRect(newRect);
                 boxChangedProp.set(true);
-                imageCanvas.paint();
+                imageCanvas.repaintSelection();
             }
 
             // update subimage
@@ -689,10 +701,13 @@ public class BoxEditorController implements Initializable {
 
             @Override
             public Void call() throws Exception {
-                readImageFile(selectedFile);
+                List<BufferedImage> pageList = readImageFile(selectedFile);
+                if (pageList == null) {
+                    return null;
+                }
                 int lastDot = selectedFile.getName().lastIndexOf(".");
                 boxFile = new File(selectedFile.getParentFile(), selectedFile.getName().substring(0, lastDot) + ".box");
-                loadBoxes(boxFile);
+                loadBoxes(boxFile, pageList);
                 return null;
             }
         };
@@ -700,23 +715,34 @@ public class BoxEditorController implements Initializable {
         new Thread(loadWorker).start();
     }
 
-    void readImageFile(File selectedFile) {
+    /**
+     * Opens an image file. The editor switches to its pages on the FX
+     * thread, which may still be using those of the previous file until then.
+     *
+     * @param selectedFile
+     * @return pages of the image, or null if it cannot be read
+     */
+    List<BufferedImage> readImageFile(File selectedFile) {
         try {
-            imageList = ImageIOHelper.getImageList(selectedFile);
-            if (imageList == null) {
-                new Alert(Alert.AlertType.ERROR, bundle.getString("Cannotloadimage")).show();
-                return;
-            }
-            imageIndex = 0;
+            // decode pages on demand rather than all up front
+            ImagePageList pageList = new ImagePageList(selectedFile);
 
             Platform.runLater(() -> {
+                List<BufferedImage> oldList = imageList;
+                imageList = pageList;
+                imageIndex = 0;
                 paginationPage.setPageCount(imageList.size());
                 paginationPage.setCurrentPageIndex(0);
                 loadImage();
                 this.scrollPaneImage.setVvalue(0); // scroll to top
                 this.scrollPaneImage.setHvalue(0); // scroll to left
                 ((Stage) tableView.getScene().getWindow()).setTitle(JTessBoxEditor.APP_NAME + " - " + selectedFile.getName());
+                // no longer in use by the UI
+                if (oldList instanceof ImagePageList) {
+                    ((ImagePageList) oldList).close();
+                }
             });
+            return pageList;
         } catch (OutOfMemoryError oome) {
             new Alert(Alert.AlertType.ERROR, "Out-Of-Memory Exception").show();
         } catch (IOException e) {
@@ -725,19 +751,31 @@ public class BoxEditorController implements Initializable {
                 new Alert(Alert.AlertType.ERROR, e.getMessage()).show();
             }
         }
+        return null;
     }
 
     void loadBoxes(File boxFile) {
+        loadBoxes(boxFile, imageList);
+    }
+
+    /**
+     * Loads boxes of a box file.
+     *
+     * @param boxFile
+     * @param pageList pages of the image the boxes belong to
+     */
+    void loadBoxes(File boxFile, List<BufferedImage> pageList) {
         if (boxFile.exists()) {
             try {
                 boxPages.clear();
 
-                // load into textarea first
-                String content = Utils.readTextFile(boxFile);
-                boxPages = parseBoxString(content, imageList);
+                long[] pageOffsets = new long[pageList.size() + 1];
+                boxPages = parseBoxFile(boxFile, pageList, pageOffsets);
+                // pages can be copied verbatim on save only from a clean file
+                recordSavedState(boxFile, isWellFormed ? pageOffsets : null);
 
                 Platform.runLater(() -> {
-                    this.taBoxData.setText(content);
+                    invalidateBoxData();
                     loadTable();
                 });
                 boxChangedProp.set(false);
@@ -761,57 +799,63 @@ public class BoxEditorController implements Initializable {
     }
 
     List<TessBoxCollection> parseBoxString(String boxStr, List<BufferedImage> imageList) throws IOException {
-        List<TessBoxCollection> allBoxPages = new ArrayList<TessBoxCollection>();
-        isWordStrFormat = false;
-        String[] boxdata = boxStr.split("\\R"); // or "\\r?\\n"
-        if (boxdata.length > 0) {
-            // if only 5 fields, it's Tess 2.0x format
-            isTess2_0Format = boxdata[0].split("\\s+").length == 5;
+        try (BoxFileReader reader = new BoxFileReader(new ByteArrayInputStream(boxStr.getBytes(StandardCharsets.UTF_8)))) {
+            return readBoxPages(reader, imageList);
         }
+    }
 
-        int startBoxIndex = 0;
-
-        for (int curPage = 0; curPage < imageList.size(); curPage++) {
-            TessBoxCollection boxCol = new TessBoxCollection();
-            // Note that the coordinate system used in the box file has (0,0) at the bottom-left.
-            // On computer graphics device, (0,0) is defined as top-left.
-            int pageHeight = imageList.get(curPage).getHeight();
-            for (int i = startBoxIndex; i < boxdata.length; i++) {
-                String[] items = boxdata[i].split("(?<!^) +");
-
-                // skip invalid data
-                if (items.length < 5 || (items.length > 6 && !items[0].equals(WORDSTR))) {
-                    continue;
-                }
+    List<TessBoxCollection> parseBoxFile(File boxFile, List<BufferedImage> imageList) throws IOException {
+        return parseBoxFile(boxFile, imageList, null);
+    }
 
-                String chrs = items[0];
-                int x = Integer.parseInt(items[1]);
-                int y = Integer.parseInt(items[2]);
-                int w = Integer.parseInt(items[3]) - x;
-                int h = Integer.parseInt(items[4]) - y;
-                y = pageHeight - y - h; // flip the y-coordinate
+    /**
+     * Parses a box file.
+     *
+     * @param boxFile box file
+     * @param imageList page images
+     * @param pageOffsets if not null, receives the byte offsets where each page
+     * begins in the file, plus its end; length must be number of pages + 1
+     * @return boxes of each page
+     * @throws IOException
+     */
+    List<TessBoxCollection> parseBoxFile(File boxFile, List<BufferedImage> imageList, long[] pageOffsets) throws IOException {
+        try (BoxFileReader reader = new BoxFileReader(boxFile)) {
+            return readBoxPages(reader, imageList, pageOffsets);
+        }
+    }
 
-                short page;
-                if (items.length == 6 || (chrs.equals(WORDSTR) && items.length >= 7)) {
-                    page = Short.parseShort(items[5]); // Tess 3.0x format
-                } else {
-                    page = 0; // Tess 2.0x format
-                }
+    private List<TessBoxCollection> readBoxPages(BoxFileReader reader, List<BufferedImage> imageList) throws IOException {
+        return readBoxPages(reader, imageList, null);
+    }
 
-                if (chrs.equals(WORDSTR) && items.length >= 7 && items[6].startsWith("#")) {
-                    chrs = boxdata[i].substring(boxdata[i].indexOf("#") + 1);
-                    isWordStrFormat = true;
-                }
+    private List<TessBoxCollection> readBoxPages(BoxFileReader reader, List<BufferedImage> imageList, long[] pageOffsets) throws IOException {
+        List<TessBoxCollection> allBoxPages = readPages(reader, imageList, pageOffsets);
+        isTess2_0Format = reader.isTess2_0Format();
+        isWordStrFormat = reader.isWordStrFormat();
+        lineSeparator = reader.getLineSeparator();
+        isWellFormed = reader.isWellFormed();
+        return allBoxPages;
+    }
 
-                if (page > curPage) {
-                    startBoxIndex = i; // mark begin of next page
-                    break;
-                }
-                boxCol.add(new TessBox(chrs, new Rectangle2D(x, y, w, h), page));
+    /**
+     * Reads boxes of each page, leaving the editor's box file format as is;
+     * the format detected is available from the reader afterwards.
+     *
+     * @param reader box file reader
+     * @param imageList page images
+     * @param pageOffsets if not null, receives the byte offsets of the pages
+     * @return boxes of each page
+     * @throws IOException
+     */
+    static List<TessBoxCollection> readPages(BoxFileReader reader, List<BufferedImage> imageList, long[] pageOffsets) throws IOException {
+        List<TessBoxCollection> allBoxPages = new ArrayList<TessBoxCollection>();
+        for (int curPage = 0; curPage < imageList.size(); curPage++) {
+            int pageHeight = ImagePageList.getHeight(imageList, curPage);
+            allBoxPages.add(reader.readPage(pageHeight));
+            if (pageOffsets != null) {
+                pageOffsets[curPage + 1] = reader.getOffset();
             }
-            allBoxPages.add(boxCol); // add the last page
         }
-
         return allBoxPages;
     }
 
@@ -896,11 +940,18 @@ public class BoxEditorController implements Initializable {
 
     boolean saveBoxFile(File file) {
         try {
-            try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
-                String str = formatOutputString(imageList, boxPages);
-                out.write(str);
-                this.taBoxData.setText(str);
+            // only pages edited since last load or save need be rewritten,
+            // provided the file has not been changed by another program
+            boolean incremental = file.equals(savedBoxFile) && file.exists() && savedPageOffsets != null
+                    && savedPageOffsets.length == boxPages.size() + 1
+                    && Files.size(file.toPath()) == savedSize
+                    && Files.getLastModifiedTime(file.toPath()).toMillis() == savedTime;
+            long[] pageOffsets = writeBoxFile(file, imageList, boxPages, incremental ? savedPageOffsets : null);
+            recordSavedState(file, pageOffsets);
+            for (TessBoxCollection boxCol : boxPages) {
+                boxCol.setModified(false);
             }
+            invalidateBoxData();
             boxChangedProp.set(false);
         } catch (OutOfMemoryError oome) {
             logger.log(Level.SEVERE, oome.getMessage(), oome);
@@ -916,27 +967,148 @@ public class BoxEditorController implements Initializable {
         return true;
     }
 
-    String formatOutputString(List<BufferedImage> imageList, List<TessBoxCollection> boxPages) {
-        StringBuilder sb = new StringBuilder();
-        for (short pageIndex = 0; pageIndex < imageList.size(); pageIndex++) {
-            int pageHeight = ((BufferedImage) imageList.get(pageIndex)).getHeight(); // each page (in an image) can have different height
-            for (TessBox box : boxPages.get(pageIndex).toList()) {
-                Rectangle2D rect = box.getRect();
-                if (isWordStrFormat && !box.getCharacter().equals("\t")) {
-                    sb.append(String.format("%s %.0f %.0f %.0f %.0f %d #%s", WORDSTR, rect.getMinX(), pageHeight - rect.getMinY() - rect.getHeight(), rect.getMinX() + rect.getWidth(), pageHeight - rect.getMinY(), pageIndex, box.getCharacter())).append(EOL);
-                } else {
-                    sb.append(String.format("%s %.0f %.0f %.0f %.0f %d", box.getCharacter(), rect.getMinX(), pageHeight - rect.getMinY() - rect.getHeight(), rect.getMinX() + rect.getWidth(), pageHeight - rect.getMinY(), pageIndex)).append(EOL);
+    /**
+     * Writes boxes of all pages to a box file.
+     *
+     * @param file box file
+     * @param imageList page images
+     * @param boxPages boxes of each page
+     * @throws IOException
+     */
+    void writeBoxFile(File file, List<BufferedImage> imageList, List<TessBoxCollection> boxPages) throws IOException {
+        writeBoxFile(file, imageList, boxPages, null);
+    }
+
+    /**
+     * Writes boxes of all pages to a box file. Content goes to a temporary
+     * file first, which then replaces the box file atomically, so an
+     * interrupted save never leaves a partial box file behind.
+     *
+     * @param file box file
+     * @param imageList page images
+     * @param boxPages boxes of each page
+     * @param sourceOffsets byte offsets of the pages in the current box file;
+     * if not null, pages not modified are copied over verbatim instead of
+     * being formatted again
+     * @return byte offsets of the pages in the written file, plus its end
+     * @throws IOException
+     */
+    long[] writeBoxFile(File file, List<BufferedImage> imageList, List<TessBoxCollection> boxPages, long[] sourceOffsets) throws IOException {
+        return writeBoxFile(file, imageList, boxPages, sourceOffsets, isTess2_0Format, isWordStrFormat, lineSeparator);
+    }
+
+    /**
+     * Writes boxes of all pages to a box file in a given format, independently
+     * of the file open in the editor.
+     *
+     * @param file box file
+     * @param imageList page images
+     * @param boxPages boxes of each page
+     * @param sourceOffsets byte offsets of the pages in the current box file;
+     * may be null
+     * @param tess2_0Format whether to omit page numbers
+     * @param wordStrFormat whether to write WordStr lines
+     * @param eol line terminator, as that of the source box file; if null,
+     * the platform line separator
+     * @return byte offsets of the pages in the written file, plus its end
+     * @throws IOException
+     */
+    static long[] writeBoxFile(File file, List<BufferedImage> imageList, List<TessBoxCollection> boxPages, long[] sourceOffsets, boolean tess2_0Format, boolean wordStrFormat, String eol) throws IOException {
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        long[] pageOffsets = new long[imageList.size() + 1];
+
+        try {
+            try (FileChannel src = sourceOffsets != null ? FileChannel.open(target, StandardOpenOption.READ) : null;
+                    FileChannel dst = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                    BoxFileWriter writer = new BoxFileWriter(dst)) {
+                setupWriter(writer, tess2_0Format, wordStrFormat, eol);
+                for (short pageIndex = 0; pageIndex < imageList.size(); pageIndex++) {
+                    TessBoxCollection boxCol = boxPages.get(pageIndex);
+                    if (src != null && !boxCol.isModified()) {
+                        writer.copyPage(src, sourceOffsets[pageIndex], sourceOffsets[pageIndex + 1]);
+                    } else {
+                        writer.writePage(boxCol, pageIndex, ImagePageList.getHeight(imageList, pageIndex));
+                    }
+                    pageOffsets[pageIndex + 1] = writer.getOffset();
                 }
+                writer.flush();
+                dst.force(true);
+            }
+
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
             }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        return pageOffsets;
+    }
+
+    /**
+     * Remembers page byte ranges and file stamp of a loaded or saved box file,
+     * for incremental saves.
+     */
+    private void recordSavedState(File file, long[] pageOffsets) throws IOException {
+        savedBoxFile = file;
+        savedPageOffsets = pageOffsets;
+        savedSize = Files.size(file.toPath());
+        savedTime = Files.getLastModifiedTime(file.toPath()).toMillis();
+    }
+
+    String formatOutputString(List<BufferedImage> imageList, List<TessBoxCollection> boxPages) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BoxFileWriter writer = new BoxFileWriter(out)) {
+            writeBoxPages(writer, imageList, boxPages);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // not expected for in-memory output
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private void writeBoxPages(BoxFileWriter writer, List<BufferedImage> imageList, List<TessBoxCollection> boxPages) throws IOException {
+        setupWriter(writer, isTess2_0Format, isWordStrFormat, lineSeparator);
+        for (short pageIndex = 0; pageIndex < imageList.size(); pageIndex++) {
+            int pageHeight = ImagePageList.getHeight(imageList, pageIndex); // each page (in an image) can have different height
+            writer.writePage(boxPages.get(pageIndex), pageIndex, pageHeight);
+        }
+    }
+
+    private static void setupWriter(BoxFileWriter writer, boolean tess2_0Format, boolean wordStrFormat, String eol) {
+        writer.setEol(eol != null ? eol : EOL);
+        writer.setTess2_0Format(tess2_0Format);
+        writer.setWordStrFormat(wordStrFormat);
+    }
+
+    /**
+     * Marks the Box Data view out of date; it is reloaded from the box file
+     * when shown.
+     */
+    void invalidateBoxData() {
+        boxDataStale = true;
+        if (tabBoxData.isSelected()) {
+            refreshBoxData();
+        }
+    }
+
+    private void refreshBoxData() {
+        if (!boxDataStale) {
+            return;
         }
-        if (isTess2_0Format) {
-            return sb.toString().replace(" 0" + EOL, EOL); // strip the ending zeroes
+        boxDataStale = false;
+        try {
+            taBoxData.setText(boxFile != null && boxFile.exists() ? Utils.readTextFile(boxFile) : null);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, e.getMessage(), e);
         }
-        return sb.toString();
     }
 
     void loadImage() {
-        image = SwingFXUtils.toFXImage(imageList.get(imageIndex), null);
+        image = imageList.get(imageIndex);
         imageCanvas.setImage(image);
         tableSelectAction = true;
         resetReadout();
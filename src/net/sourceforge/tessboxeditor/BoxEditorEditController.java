@@ -17,12 +17,18 @@ package net.sourceforge.tessboxeditor;
 
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
+import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javafx.collections.ObservableList;
 import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -35,6 +41,8 @@ import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.Label;
 import javafx.scene.control.ProgressBar;
+import javafx.scene.control.Spinner;
+import javafx.scene.control.SpinnerValueFactory;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
@@ -43,11 +51,10 @@ import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 import net.sourceforge.tess4j.ITessAPI;
 import net.sourceforge.tess4j.ITesseract;
-import net.sourceforge.tess4j.Tesseract;
-import net.sourceforge.tess4j.util.ImageIOHelper;
+import net.sourceforge.tessboxeditor.datamodel.BoxFileReader;
 import net.sourceforge.tessboxeditor.datamodel.TessBox;
 import net.sourceforge.tessboxeditor.datamodel.TessBoxCollection;
-import net.sourceforge.vietocr.util.Utils;
+import net.sourceforge.tessboxeditor.utilities.ImagePageList;
 
 public class BoxEditorEditController extends BoxEditorController {
 
@@ -64,10 +71,27 @@ public class BoxEditorEditController extends BoxEditorController {
     @FXML
     private Button btnMarkEOLBulk;
     @FXML
+    private Spinner<Integer> spinnerMarkEOLThreads;
+    @FXML
     private Button btnRemoveEmptyBoxes;
 
     private OcrSegmentWorker ocrSegmentWorker;
     private OcrSegmentBulkWorker ocrSegmentBulkWorker;
+    private static final int MAX_MARK_EOL_THREADS = 64;
+
+    @Override
+    public void initialize(URL url, ResourceBundle rb) {
+        super.initialize(url, rb);
+        spinnerMarkEOLThreads.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(1, MAX_MARK_EOL_THREADS,
+                prefs.getInt("markEOLConcurrency", Runtime.getRuntime().availableProcessors())));
+        spinnerMarkEOLThreads.visibleProperty().bind(btnMarkEOLBulk.visibleProperty());
+    }
+
+    @Override
+    public void savePrefs() {
+        super.savePrefs();
+        prefs.putInt("markEOLConcurrency", spinnerMarkEOLThreads.getValue());
+    }
 
     /**
      * Event handler.
@@ -117,7 +141,7 @@ public class BoxEditorEditController extends BoxEditorController {
         for (TessBox box : selected) {
             chrs += box.getCharacter();
             page = box.getPage();
-            index = this.boxes.toList().indexOf(box);
+            index = this.boxes.indexOf(box);
             Rectangle2D rect = box.getRect();
             minX = Math.min(minX, rect.getMinX());
             minY = Math.min(minY, rect.getMinY());
@@ -159,7 +183,7 @@ public class BoxEditorEditController extends BoxEditorController {
 //        }
 
         TessBox box = selected.get(0);
-        int index = this.boxes.toList().indexOf(box);
+        int index = this.boxes.indexOf(box);
         Rectangle2D rect = box.getRect();
         double w = rect.getWidth();
         double h = rect.getHeight();
@@ -213,7 +237,7 @@ public class BoxEditorEditController extends BoxEditorController {
             }
 
             TessBox box = selected.get(0);
-            index = this.boxes.toList().indexOf(box);
+            index = this.boxes.indexOf(box);
             index++;
             // offset the new box 15 pixel from the base one
             newBox = new TessBox(" ", new Rectangle2D(box.getX() + 15, box.getY(), box.getWidth(), box.getHeight()), box.getPage());
@@ -262,7 +286,7 @@ public class BoxEditorEditController extends BoxEditorController {
             this.imageCanvas.setCursor(javafx.scene.Cursor.WAIT);
 
             // instantiate task for OCR
-            ocrSegmentBulkWorker = new OcrSegmentBulkWorker(files);
+            ocrSegmentBulkWorker = new OcrSegmentBulkWorker(files, spinnerMarkEOLThreads.getValue());
             ProgressMonitor progressMonitor = new ProgressMonitor(ocrSegmentBulkWorker);
             progressMonitor.setTitle(JTessBoxEditor.APP_NAME);
             ocrSegmentBulkWorker.setOnSucceeded(event -> {
@@ -301,11 +325,11 @@ public class BoxEditorEditController extends BoxEditorController {
 
         @Override
         protected Void call() throws Exception {
-            ITesseract instance = new Tesseract();
             String tessDirectory = ((TextField) btnMarkEOL.getScene().lookup("#tfTessDir")).getText();
             String tessdataPath = MainController.WINDOWS ? tessDirectory + "/tessdata" : "/usr/share/tesseract-ocr/4.00/tessdata";
-            instance.setDatapath(tessdataPath);
-            performSegment(imageList, boxPages, instance);
+            try (LineSegmenter instance = new LineSegmenter(tessdataPath)) {
+                performSegment(imageList, boxPages, instance);
+            }
             return null;
         }
 
@@ -327,53 +351,120 @@ public class BoxEditorEditController extends BoxEditorController {
     }
 
     /**
-     * A worker class for managing OCR process.
+     * A worker class for managing OCR process. Files are segmented
+     * concurrently, each worker thread with its own Tesseract engine, kept
+     * initialized across pages and files, while
+     * pages of a file are decoded ahead of segmentation and finished files are
+     * written by a separate writer thread.
      */
     class OcrSegmentBulkWorker extends Task<Void> {
 
         List<File> files;
+        int nThreads;
+        private double workDone; // in files, with partial progress of files under way
 
-        public OcrSegmentBulkWorker(List<File> files) {
+        public OcrSegmentBulkWorker(List<File> files, int nThreads) {
             this.files = files;
+            this.nThreads = Math.max(1, nThreads);
         }
 
         @Override
         protected Void call() throws Exception {
-            int progress = 0;
-            updateProgress(0, 100);
-            ITesseract instance = new Tesseract();
+            updateProgress(0, files.size());
             String tessDirectory = ((TextField) btnMarkEOL.getScene().lookup("#tfTessDir")).getText();
             String tessdataPath = MainController.WINDOWS ? tessDirectory + "/tessdata" : "/usr/share/tesseract-ocr/4.00/tessdata";
-            instance.setDatapath(tessdataPath);
+            Queue<LineSegmenter> engines = new ConcurrentLinkedQueue<LineSegmenter>();
+            ThreadLocal<ITesseract> instances = ThreadLocal.withInitial(() -> {
+                LineSegmenter instance = new LineSegmenter(tessdataPath);
+                engines.add(instance);
+                return instance;
+            });
 
-            int tick = (int) Math.ceil(100f / files.size());
-            for (File imageFile : files) {
-                if (isCancelled()) {
-                    updateMessage("Cancelled");
-                    break;
+            ExecutorService segmenters = Executors.newFixedThreadPool(Math.min(nThreads, files.size()));
+            ExecutorService writer = Executors.newSingleThreadExecutor();
+            try {
+                List<Future<Future<?>>> results = new ArrayList<Future<Future<?>>>();
+                for (File imageFile : files) {
+                    results.add(segmenters.submit(() -> segmentFile(imageFile, instances.get(), writer)));
                 }
-
-                int lastDot = imageFile.getName().lastIndexOf(".");
-                File boxFile = new File(imageFile.getParentFile(), imageFile.getName().substring(0, lastDot) + ".box");
-                if (!boxFile.exists()) {
-                    continue;
+                for (Future<Future<?>> result : results) {
+                    Future<?> written = result.get();
+                    if (written != null) {
+                        written.get();
+                    }
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : e;
+            } finally {
+                segmenters.shutdownNow();
+                writer.shutdownNow();
+                for (LineSegmenter engine : engines) {
+                    engine.close(); // after the page it may be segmenting
                 }
+            }
+            return null;
+        }
 
-                List<BufferedImage> imageList = ImageIOHelper.getImageList(imageFile);
-                String str = Utils.readTextFile(boxFile);
-                List<TessBoxCollection> boxPages = parseBoxString(str, imageList);
-                performSegment(imageList, boxPages, instance);
+        /**
+         * Segments the pages of a file and queues the file for writing.
+         *
+         * @return pending write, or null if the file has no box file or the
+         * task has been cancelled
+         */
+        private Future<?> segmentFile(File imageFile, ITesseract instance, ExecutorService writer) throws Exception {
+            int lastDot = imageFile.getName().lastIndexOf(".");
+            File boxFile = new File(imageFile.getParentFile(), imageFile.getName().substring(0, lastDot) + ".box");
+            if (!boxFile.exists()) {
+                addWork(1, imageFile.getName());
+                return null;
+            }
+
+            ImagePageList imageList = new ImagePageList(imageFile);
+            try {
+                final List<TessBoxCollection> boxPages;
+                final boolean tess2_0Format;
+                final boolean wordStrFormat;
+                final String eol;
+                try (BoxFileReader reader = new BoxFileReader(boxFile)) {
+                    boxPages = readPages(reader, imageList, null);
+                    tess2_0Format = reader.isTess2_0Format();
+                    wordStrFormat = reader.isWordStrFormat();
+                    eol = reader.getLineSeparator();
+                }
 
-                // save boxes
-                try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(boxFile), StandardCharsets.UTF_8))) {
-                    out.write(formatOutputString(imageList, boxPages));
+                final double step = 1.0 / (imageList.size() + 1); // each page, then writing
+                for (short pageIndex = 0; pageIndex < imageList.size(); pageIndex++) {
+                    if (isCancelled()) {
+                        imageList.close();
+                        return null;
+                    }
+                    // next page is being decoded in the background meanwhile
+                    segmentPage(imageList.get(pageIndex), boxPages.get(pageIndex), pageIndex, instance);
+                    addWork(step, null);
                 }
 
-                progress += tick;
-                updateProgress(Math.min(progress, 100), 100);
-                updateMessage(imageFile.getName());
+                return writer.submit(() -> {
+                    try {
+                        writeBoxFile(boxFile, imageList, boxPages, null, tess2_0Format, wordStrFormat, eol);
+                    } finally {
+                        imageList.close();
+                    }
+                    addWork(step, imageFile.getName());
+                    return null;
+                });
+            } catch (Exception | Error e) {
+                imageList.close();
+                throw e;
+            }
+        }
+
+        private synchronized void addWork(double work, String message) {
+            workDone += work;
+            updateProgress(Math.min(workDone, files.size()), files.size());
+            if (message != null) {
+                updateMessage(message);
             }
-            return null;
         }
 
         @Override
@@ -406,25 +497,54 @@ public class BoxEditorEditController extends BoxEditorController {
     void performSegment(final List<BufferedImage> imageList, final List<TessBoxCollection> boxPages, final ITesseract instance) throws Exception {
         short pageIndex = 0;
         for (BufferedImage image : imageList) {
-            // Perform text-line segmentation
-            List<Rectangle> regions = instance.getSegmentedRegions(image, ITessAPI.TessPageIteratorLevel.RIL_TEXTLINE);
-            TessBoxCollection boxesPerPage = boxPages.get(pageIndex); // boxes per page
-            for (Rectangle rect : regions) { // process each line
-                Rectangle2D rect2d = new Rectangle2D(rect.getMinX(), rect.getMinY(), rect.getWidth(), rect.getHeight());
-                TessBox lastBox = boxesPerPage.toList().stream().filter((r) -> {
-                    return rect2d.contains(r.getRect());
-                }).reduce((first, second) -> second).orElse(null);
-
-                if (lastBox == null) {
-                    continue;
+            segmentPage(image, boxPages.get(pageIndex), pageIndex, instance);
+            pageIndex++;
+        }
+    }
+
+    /**
+     * Inserts an EOL tab box after the last box of each text line of a page.
+     *
+     * @param image page image
+     * @param boxesPerPage boxes of the page
+     * @param pageIndex page index
+     * @param instance Tesseract instance, for text-line segmentation
+     * @throws Exception
+     */
+    static void segmentPage(BufferedImage image, TessBoxCollection boxesPerPage, short pageIndex, ITesseract instance) throws Exception {
+        // Perform text-line segmentation
+        List<Rectangle> regions = instance.getSegmentedRegions(image, ITessAPI.TessPageIteratorLevel.RIL_TEXTLINE);
+        ObservableList<TessBox> boxList = boxesPerPage.toList();
+        TessBox[] tabs = new TessBox[boxList.size()]; // EOL box to follow box at each position
+        for (Rectangle rect : regions) { // process each line
+            Rectangle2D rect2d = new Rectangle2D(rect.getMinX(), rect.getMinY(), rect.getWidth(), rect.getHeight());
+            // only boxes near the line, via spatial index; take the last one in the line
+            int index = -1;
+            for (TessBox box : boxesPerPage.getBoxesIn(rect2d)) {
+                if (rect2d.contains(box.getRect())) {
+                    index = Math.max(index, boxesPerPage.indexOf(box));
                 }
+            }
 
-                int index = boxesPerPage.toList().indexOf(lastBox);
-                Rectangle2D rect2 = lastBox.getRect();
-                Rectangle2D nRect = new Rectangle2D(rect2.getMaxX() + 10, rect2.getMinY(), rect2.getWidth(), rect2.getHeight());
-                boxesPerPage.add(index + 1, new TessBox("\t", nRect, pageIndex));
+            if (index == -1) {
+                continue;
             }
-            pageIndex++;
+
+            Rectangle2D rect2 = boxList.get(index).getRect();
+            Rectangle2D nRect = new Rectangle2D(rect2.getMaxX() + 10, rect2.getMinY(), rect2.getWidth(), rect2.getHeight());
+            tabs[index] = new TessBox("\t", nRect, pageIndex);
+        }
+
+        // insert EOL boxes in a single pass rather than shifting the list for each line
+        List<TessBox> merged = new ArrayList<TessBox>(boxList.size() + regions.size());
+        for (int i = 0; i < tabs.length; i++) {
+            merged.add(boxList.get(i));
+            if (tabs[i] != null) {
+                merged.add(tabs[i]);
+            }
+        }
+        if (merged.size() > boxList.size()) {
+            boxList.setAll(merged);
         }
     }
 
@@ -29,7 +29,6 @@ import java.util.ResourceBundle;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.prefs.Preferences;
-import java.util.stream.Collectors;
 import javafx.application.Platform;
 import javafx.beans.Observable;
 import javafx.beans.value.ChangeListener;
@@ -43,6 +42,7 @@ import javafx.fxml.Initializable;
 import javafx.geometry.Bounds;
 import javafx.geometry.Insets;
 import javafx.scene.Cursor;
+import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.input.DragEvent;
 import javafx.scene.input.Dragboard;
@@ -62,6 +62,7 @@ import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.util.StringConverter;
 
 import org.controlsfx.dialog.FontSelectorDialog;
+import net.sourceforge.tessboxeditor.utilities.Paginator;
 import net.sourceforge.tessboxeditor.utilities.Utils;
 
 public class ImageGeneratorController implements Initializable {
@@ -126,8 +127,6 @@ public class ImageGeneratorController implements Initializable {
     int filterIndex;
     private FileChooser fcInputText;
     boolean textChanged;
-    int pageNum;
-    int startIndex;
     List<String> allText = new ArrayList<String>();
     List<List<String>> textPages = new ArrayList<List<String>>();
     BreakIterator breakIterator = BreakIterator.getCharacterInstance();
@@ -528,89 +527,115 @@ public class ImageGeneratorController implements Initializable {
 
             new Thread(worker).start();
         } else {
-            try {
-                // make box
-                if (tabPane.getSelectionModel().getSelectedIndex() == 0) {
-                    tabPane.getSelectionModel().select(1);
-
-                    // wait for box layout complete first
-                    Platform.runLater(new Runnable() {
-                        @Override
-                        public void run() {
-                            generateTiffBox();
-                        }
-                    });
-                    return;
-                }
+            // make box
+            if (tabPane.getSelectionModel().getSelectedIndex() == 0) {
+                tabPane.getSelectionModel().select(1);
 
-                pageNum = 1;
-                startIndex = 0;
-                textPages.clear();
-                breakPages((int) this.spnH.getValue());
-
-                // this JavaFX-based method is executed on FX Application thread since it involves and relies on UI elements to generate the image
-                TiffBoxGeneratorFX generator = new TiffBoxGeneratorFX(textPages, fontGen, (int) this.spnW.getValue(), (int) this.spnH.getValue());
-                generator.setOutputFolder(new File(outputDirectory));
-                generator.setFileName(prefix + this.tfFileName.getText());
-                generator.setTracking(this.spnTracking.getValue().floatValue());
-                generator.setLeading(this.spnLeading.getValue());
-                generator.setMargin(margin);
-                generator.setNoiseAmount((int) this.spnNoise.getValue());
-                generator.setAntiAliasing(this.chbAntiAliasing.isSelected());
-                generator.create();
-
-                // update font_properties file
-                Utils.updateFontProperties(new File(outputDirectory), prefix + this.tfFileName.getText(), fontGen);
-                String msg = String.format("TIFF/Box files have been generated and saved in %s folder.", outputDirectory);
-
-                if (fontpropFile.exists() && lastModified != fontpropFile.lastModified()) {
-                    msg = msg.concat("\nBe sure to check the entries in font_properties file for accuracy.");
-                }
-                Alert alert = new Alert(Alert.AlertType.NONE, msg, ButtonType.OK);
-                alert.setTitle(JTessBoxEditor.APP_NAME);
-                // workaround text truncate in Linux
-                alert.getDialogPane().getChildren().stream().filter(node -> node instanceof Label).forEach(node -> ((Label) node).setMinHeight(Region.USE_PREF_SIZE));
-                alert.showAndWait();
-            } catch (OutOfMemoryError oome) {
-                String msg = "The input text was probably too large. Please reduce it to a more manageable amount.";
-                Alert alert = new Alert(Alert.AlertType.ERROR, msg, ButtonType.OK);
-                alert.setTitle("Out-Of-Memory Error");
-                alert.setHeaderText(null);
-                alert.showAndWait();
-            } catch (Exception e) {
-                //e.printStackTrace();
-                Alert alert = new Alert(Alert.AlertType.ERROR, e.getMessage() != null ? e.getMessage() : e.toString(), ButtonType.OK);
-                alert.setTitle(JTessBoxEditor.APP_NAME);
-                alert.setHeaderText(null);
-                alert.showAndWait();
-            } finally {
+                // wait for box layout complete first
                 Platform.runLater(new Runnable() {
                     @Override
                     public void run() {
-                        btnGenerate.setDisable(false);
-                        taInput.getScene().getRoot().setCursor(Cursor.DEFAULT);
+                        generateTiffBox();
                     }
                 });
+                return;
+            }
+
+            textPages.clear();
+            breakPages((int) this.spnH.getValue());
+
+            // copy pages, as the text may be laid out again while generating
+            List<List<String>> pages = new ArrayList<List<String>>();
+            for (List<String> textPage : textPages) {
+                pages.add(new ArrayList<String>(textPage));
             }
+
+            final String prefixF = prefix;
+            final long lastModifiedF = lastModified;
+            final TiffBoxGeneratorFX generator = new TiffBoxGeneratorFX(pages, fontGen, (int) this.spnW.getValue(), (int) this.spnH.getValue());
+            generator.setOutputFolder(new File(outputDirectory));
+            generator.setFileName(prefix + this.tfFileName.getText());
+            generator.setTracking(this.spnTracking.getValue().floatValue());
+            generator.setLeading(this.spnLeading.getValue());
+            generator.setMargin(margin);
+            generator.setNoiseAmount((int) this.spnNoise.getValue());
+            generator.setAntiAliasing(this.chbAntiAliasing.isSelected());
+
+            // render pages on background task
+            Task<Void> worker = new Task<Void>() {
+
+                @Override
+                protected Void call() throws Exception {
+                    generator.create();
+                    return null;
+                }
+
+                @Override
+                protected void succeeded() {
+                    super.succeeded();
+                    // update font_properties file
+                    Utils.updateFontProperties(new File(outputDirectory), prefixF + tfFileName.getText(), fontGen);
+                    String msg = String.format("TIFF/Box files have been generated and saved in %s folder.", outputDirectory);
+
+                    if (fontpropFile.exists() && lastModifiedF != fontpropFile.lastModified()) {
+                        msg = msg.concat("\nBe sure to check the entries in font_properties file for accuracy.");
+                    }
+                    Alert alert = new Alert(Alert.AlertType.NONE, msg, ButtonType.OK);
+                    alert.setTitle(JTessBoxEditor.APP_NAME);
+                    // workaround text truncate in Linux
+                    alert.getDialogPane().getChildren().stream().filter(node -> node instanceof Label).forEach(node -> ((Label) node).setMinHeight(Region.USE_PREF_SIZE));
+                    alert.showAndWait();
+                    btnGenerate.setDisable(false);
+                    taInput.getScene().getRoot().setCursor(Cursor.DEFAULT);
+                }
+
+                @Override
+                protected void failed() {
+                    super.failed();
+                    Throwable e = getException();
+                    Alert alert;
+                    if (e instanceof OutOfMemoryError) {
+                        String msg = "The input text was probably too large. Please reduce it to a more manageable amount.";
+                        alert = new Alert(Alert.AlertType.ERROR, msg, ButtonType.OK);
+                        alert.setTitle("Out-Of-Memory Error");
+                    } else {
+                        alert = new Alert(Alert.AlertType.ERROR, e.getMessage() != null ? e.getMessage() : e.toString(), ButtonType.OK);
+                        alert.setTitle(JTessBoxEditor.APP_NAME);
+                    }
+                    alert.setHeaderText(null);
+                    alert.showAndWait();
+                    btnGenerate.setDisable(false);
+                    taInput.getScene().getRoot().setCursor(Cursor.DEFAULT);
+                }
+            };
+
+            new Thread(worker).start();
         }
     }
 
+    /**
+     * Breaks laid-out text into pages of the given height.
+     *
+     * @param height page height
+     */
     void breakPages(int height) {
-        List<Rectangle> boxes = this.textFlow.getChildren().stream()
-                .filter(b -> b instanceof Rectangle)
-                .map(b -> (Rectangle) b)
-                .collect(Collectors.toList());
-
-        int printableHeight = pageNum == 1 ? height - margin * 2 : height - margin * 2 * pageNum;
-        Optional<Rectangle> op = boxes.stream().filter(b -> (b.getY() + b.getHeight()) > printableHeight).findFirst();
-        if (op.isPresent()) {
-            int endIndex = boxes.indexOf(op.get());
-            textPages.add(allText.subList(startIndex, endIndex));
-            pageNum++;
-            startIndex = endIndex;
-            breakPages((int) this.spnH.getValue() * pageNum);
-        } else {
-            textPages.add(allText.subList(startIndex, allText.size()));
+        List<Rectangle> boxes = new ArrayList<Rectangle>();
+        for (Node node : this.textFlow.getChildren()) {
+            if (node instanceof Rectangle) {
+                boxes.add((Rectangle) node);
+            }
+        }
+
+        double[] tops = new double[boxes.size()];
+        double[] bottoms = new double[boxes.size()];
+        for (int i = 0; i < tops.length; i++) {
+            Rectangle box = boxes.get(i);
+            tops[i] = box.getY();
+            bottoms[i] = box.getY() + box.getHeight();
+        }
+
+        for (int[] range : Paginator.paginate(tops, bottoms, height - margin * 2)) {
+            textPages.add(allText.subList(range[0], Math.min(range[1], allText.size())));
         }
     }
 
@@ -0,0 +1,246 @@
+/**
+ * Copyright @ 2016 Quan Nguyen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package net.sourceforge.tessboxeditor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import net.sourceforge.tess4j.ITesseract;
+import net.sourceforge.tessboxeditor.datamodel.BoxFileReader;
+import net.sourceforge.tessboxeditor.datamodel.TessBoxCollection;
+import net.sourceforge.tessboxeditor.utilities.ImagePageList;
+import net.sourceforge.vietpad.utilities.TextUtilities;
+
+/**
+ * Headless command-line batch processing of image/box file pairs. Files are
+ * processed in parallel, each box file being rewritten in place. Does not
+ * start the JavaFX toolkit, so runs on machines without a display.
+ */
+public class JTessBoxEditorCLI {
+
+    private static final String USAGE = "Usage: java -cp " + JTessBoxEditor.APP_NAME + ".jar " + JTessBoxEditorCLI.class.getName() + " [options] <directory or image file>...\n"
+            + "Processes image files having box files of the same base name; the box files are rewritten in place.\n"
+            + "With no operation given, box files are only parsed and checked.\n"
+            + "Operations, applied in this order:\n"
+            + "  -removeEmpty          remove empty boxes, i.e., those of spaces and tabs\n"
+            + "  -combine              combine boxes of combining symbols with their base characters\n"
+            + "  -markEOL              insert tab boxes at the end of text lines\n"
+            + "  -format tess2|tess3   write in Tess 2.0x or 3.0x box format\n"
+            + "Options:\n"
+            + "  -symbols <symbols>    combining symbols, as appending;prepending characters, literal or\n"
+            + "                        in U+XXXX notation (default: those of data/combiningsymbols.txt)\n"
+            + "  -tessdata <dir>       tessdata directory, for -markEOL (default: TESSDATA_PREFIX)\n"
+            + "  -threads <n>          number of files processed at once (default: number of processors)";
+
+    private boolean removeEmpty;
+    private boolean combine;
+    private boolean markEOL;
+    private String format;
+    private String symbols;
+    private String tessdataPath = System.getenv("TESSDATA_PREFIX");
+    private int nThreads = Runtime.getRuntime().availableProcessors();
+    private final List<File> imageFiles = new ArrayList<File>();
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        JTessBoxEditorCLI cli = new JTessBoxEditorCLI();
+        try {
+            cli.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        System.exit(cli.run() ? 0 : 1);
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-removeEmpty":
+                    removeEmpty = true;
+                    break;
+                case "-combine":
+                    combine = true;
+                    break;
+                case "-markEOL":
+                    markEOL = true;
+                    break;
+                case "-format":
+                    format = value(args, ++i, arg);
+                    if (!format.equals("tess2") && !format.equals("tess3")) {
+                        throw new IllegalArgumentException("Unknown box format: " + format);
+                    }
+                    break;
+                case "-symbols":
+                    symbols = TextUtilities.convertNCR(value(args, ++i, arg)); // allow U+XXXX notation
+                    break;
+                case "-tessdata":
+                    tessdataPath = value(args, ++i, arg);
+                    break;
+                case "-threads":
+                    try {
+                        nThreads = Integer.parseInt(value(args, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid number of threads: " + args[i]);
+                    }
+                    break;
+                default:
+                    if (arg.startsWith("-")) {
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                    addFiles(new File(arg));
+                    break;
+            }
+        }
+
+        if (imageFiles.isEmpty()) {
+            throw new IllegalArgumentException("No image files with box files given.");
+        }
+        if (markEOL && tessdataPath == null) {
+            throw new IllegalArgumentException("-markEOL needs the tessdata directory.");
+        }
+        if (combine && symbols == null) {
+            symbols = new SymbolFileParser().getCombiningSymbols();
+            if (symbols == null) {
+                throw new IllegalArgumentException("-combine needs combining symbols.");
+            }
+        }
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[i];
+    }
+
+    private void addFiles(File file) {
+        if (file.isDirectory()) {
+            imageFiles.addAll(AccuracyEvaluator.listImageFiles(file));
+        } else if (file.isFile() && AccuracyEvaluator.getBoxFile(file) != null) {
+            imageFiles.add(file);
+        } else {
+            throw new IllegalArgumentException("No box file for " + file);
+        }
+    }
+
+    /**
+     * Processes all files, reporting on each in order.
+     *
+     * @return true if all files were processed successfully
+     */
+    boolean run() {
+        Queue<LineSegmenter> engines = new ConcurrentLinkedQueue<LineSegmenter>();
+        ThreadLocal<ITesseract> instances = ThreadLocal.withInitial(() -> {
+            LineSegmenter instance = new LineSegmenter(tessdataPath);
+            engines.add(instance);
+            return instance;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(nThreads, imageFiles.size())));
+        int failures = 0;
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (File imageFile : imageFiles) {
+                results.add(executor.submit(() -> process(imageFile, instances)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    System.out.println(results.get(i).get());
+                } catch (ExecutionException e) {
+                    failures++;
+                    Throwable cause = e.getCause();
+                    System.err.println(imageFiles.get(i).getName() + ": " + (cause.getMessage() != null ? cause.getMessage() : cause));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            executor.shutdownNow();
+            for (LineSegmenter engine : engines) {
+                engine.close(); // after the page it may be segmenting
+            }
+        }
+
+        System.out.println(String.format("%d file(s) processed, %d failed.", imageFiles.size() - failures, failures));
+        return failures == 0;
+    }
+
+    /**
+     * Processes an image/box file pair.
+     *
+     * @return summary of the file
+     */
+    private String process(File imageFile, ThreadLocal<ITesseract> instances) throws Exception {
+        File boxFile = AccuracyEvaluator.getBoxFile(imageFile);
+        try (ImagePageList imageList = new ImagePageList(imageFile)) {
+            List<TessBoxCollection> boxPages;
+            boolean tess2_0Format;
+            boolean wordStrFormat;
+            String eol;
+            try (BoxFileReader reader = new BoxFileReader(boxFile)) {
+                boxPages = BoxEditorController.readPages(reader, imageList, null);
+                tess2_0Format = reader.isTess2_0Format();
+                wordStrFormat = reader.isWordStrFormat();
+                eol = reader.getLineSeparator();
+            }
+            int before = countBoxes(boxPages);
+
+            for (short pageIndex = 0; pageIndex < boxPages.size(); pageIndex++) {
+                TessBoxCollection boxCol = boxPages.get(pageIndex);
+                if (removeEmpty) {
+                    boxCol.toList().removeIf(b -> b.getCharacter().equals(" ") || b.getCharacter().equals("\t"));
+                }
+                if (combine) {
+                    boxCol.setCombiningSymbols(symbols);
+                    boxCol.combineBoxes();
+                }
+                if (markEOL) {
+                    BoxEditorEditController.segmentPage(imageList.get(pageIndex), boxCol, pageIndex, instances.get());
+                }
+            }
+
+            if (format != null) {
+                tess2_0Format = format.equals("tess2");
+            }
+            if (removeEmpty || combine || markEOL || format != null) {
+                BoxEditorController.writeBoxFile(boxFile, imageList, boxPages, null, tess2_0Format, wordStrFormat, eol);
+            }
+            return String.format("%s: %d page(s), %d box(es)%s", boxFile.getName(), boxPages.size(), countBoxes(boxPages),
+                    countBoxes(boxPages) != before ? " (was " + before + ")" : "");
+        }
+    }
+
+    private static int countBoxes(List<TessBoxCollection> boxPages) {
+        int count = 0;
+        for (TessBoxCollection boxCol : boxPages) {
+            count += boxCol.toList().size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright @ 2016 Quan Nguyen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package net.sourceforge.tessboxeditor;
+
+import com.sun.jna.ptr.PointerByReference;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import net.sourceforge.lept4j.Box;
+import net.sourceforge.lept4j.Boxa;
+import net.sourceforge.lept4j.ILeptonica;
+import net.sourceforge.lept4j.Leptonica;
+import net.sourceforge.tess4j.ITessAPI;
+import net.sourceforge.tess4j.Tesseract;
+import net.sourceforge.tess4j.TesseractException;
+
+/**
+ * A Tesseract engine for segmentation that stays initialized across images,
+ * instead of being initialized and disposed of on each call as by
+ * {@link Tesseract#getSegmentedRegions}. Like any engine, it is to be used by
+ * one thread at a time.
+ */
+class LineSegmenter extends Tesseract implements Closeable {
+
+    private boolean open;
+    private boolean closed;
+
+    /**
+     * Creates a segmenter; the engine is initialized on first use.
+     *
+     * @param datapath tessdata directory
+     */
+    LineSegmenter(String datapath) {
+        setDatapath(datapath);
+    }
+
+    @Override
+    public synchronized List<Rectangle> getSegmentedRegions(BufferedImage bi, int pageIteratorLevel) throws TesseractException {
+        if (closed) {
+            throw new TesseractException("Segmenter has been closed.");
+        }
+        if (!open) {
+            init();
+            setVariables();
+            open = true;
+        }
+
+        try {
+            setImage(bi);
+        } catch (IOException ioe) {
+            throw new TesseractException(ioe);
+        }
+
+        List<Rectangle> list = new ArrayList<Rectangle>();
+        Leptonica leptInstance = Leptonica.INSTANCE;
+        Boxa boxes = getAPI().TessBaseAPIGetComponentImages(getHandle(), pageIteratorLevel, ITessAPI.TRUE, null, null);
+        if (boxes == null) {
+            return list;
+        }
+        int boxCount = leptInstance.boxaGetCount(boxes);
+        for (int i = 0; i < boxCount; i++) {
+            Box box = leptInstance.boxaGetBox(boxes, i, ILeptonica.L_CLONE);
+            if (box == null) {
+                continue;
+            }
+            list.add(new Rectangle(box.x, box.y, box.w, box.h));
+            PointerByReference pRef = new PointerByReference();
+            pRef.setValue(box.getPointer());
+            leptInstance.boxDestroy(pRef);
+        }
+        PointerByReference pRef = new PointerByReference();
+        pRef.setValue(boxes.getPointer());
+        leptInstance.boxaDestroy(pRef);
+        return list;
+    }
+
+    /**
+     * Releases the engine, waiting for a call in progress to finish first.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (open) {
+            open = false;
+            dispose();
+        }
+    }
+}
@@ -22,11 +22,17 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javafx.beans.property.SimpleStringProperty;
-import javafx.beans.property.StringProperty;
 import javafx.scene.text.Font;
+import net.sourceforge.tessboxeditor.TrainingPipeline.StepType;
 
 import net.sourceforge.vietocr.util.*;
 import net.sourceforge.vietpad.utilities.TextUtilities;
@@ -56,6 +62,8 @@ public class TessTrainer {
     String lang;
     String bootstrapLang;
     boolean rtl;
+    int concurrency = Runtime.getRuntime().availableProcessors();
+    TrainingCache cache;
 
     private final static Logger logger = Logger.getLogger(TessTrainer.class.getName());
 
@@ -72,6 +80,15 @@ public class TessTrainer {
         this.rtl = rtl;
     }
 
+    /**
+     * Sets maximum number of per-image commands to run concurrently.
+     *
+     * @param concurrency number of concurrent processes; 1 to run serially
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+    }
+
     /**
      * Generates data based on selection of training mode.
      *
@@ -80,6 +97,7 @@ public class TessTrainer {
      * @throws Exception
      */
     public void generate(TrainingMode mode) throws Exception {
+        cache = new TrainingCache(new File(inputDataDir, lang + ".training_cache"));
         switch (mode) {
             case Make_Box_File:
             case Make_LSTM_Box_File:
@@ -87,16 +105,10 @@ public class TessTrainer {
                 makeBox(mode);
                 break;
             case Train_with_Existing_Box:
-                generateTraineddata(true);
-                break;
             case Shape_Clustering:
-                runShapeClustering();
-                break;
             case Dictionary:
-                runDictionary();
-                break;
             case Train_from_Scratch:
-                generateTraineddata(false);
+                runPipeline(mode);
                 break;
             default:
                 break;
@@ -169,60 +181,120 @@ public class TessTrainer {
 
         logger.info(boxType.toString());
         writeMessage(String.format("** %s **", boxType.toString()));
-        for (String file : files) {
-            cmd.set(1, file);
-            cmd.set(2, TextUtilities.stripExtension(file));
-            runCommand(cmd);
-        }
+        runCommands(getFileCommands(cmd, files));
     }
 
     /**
-     * Generates traineddata file.
+     * Builds the training pipeline starting from the step of the given mode,
+     * runs it, and reports step timings.
      *
-     * @param skipBoxGeneration
+     * @param mode training mode
      * @throws Exception
      */
-    void generateTraineddata(boolean skipBoxGeneration) throws Exception {
-        if (!skipBoxGeneration) {
-            makeBox(TrainingMode.Make_Box_File);
-        }
+    void runPipeline(TrainingMode mode) throws Exception {
+        TrainingPipeline pipeline = buildPipeline(mode);
+        pipeline.run();
+        writeMessage(pipeline.getReport());
 
-        String[] files = getImageFilesWithBox();
+        logger.info("Training Completed");
+        writeMessage("** Training Completed **");
+    }
 
-        if (files.length == 0) {
-            throw new RuntimeException("There are no training image/box pairs.");
+    /**
+     * Builds the training pipeline. Training modes map to start nodes of the
+     * graph: from scratch starts with making boxes; with existing boxes, with
+     * training on them and computing the character set; shape clustering,
+     * with the clustering steps; dictionary, with building the dawgs.
+     *
+     * @param mode training mode
+     * @return pipeline
+     * @throws IOException
+     */
+    TrainingPipeline buildPipeline(TrainingMode mode) throws IOException {
+        TrainingPipeline pipeline = new TrainingPipeline(cache, concurrency, this::writeMessage);
+        Set<String> trFiles;
+        switch (mode) {
+            case Train_from_Scratch:
+            case Train_with_Existing_Box:
+                trFiles = addTrainingSteps(pipeline, mode == TrainingMode.Train_from_Scratch);
+                break;
+            case Shape_Clustering:
+                trFiles = listFiles(".tr");
+                if (trFiles.isEmpty()) {
+                    throw new RuntimeException("There are no .tr files. Need to train Tesseract first.");
+                }
+                break;
+            default:
+                trFiles = null;
+                if (!new File(inputDataDir, lang + ".unicharset").exists()) {
+                    String msg = String.format("There is no %1$s.unicharset. Need to train Tesseract first.", lang);
+                    throw new RuntimeException(msg);
+                }
+                break;
         }
 
-        logger.info("Run Tesseract for Training");
-        writeMessage("** Run Tesseract for Training **");
-        //cmdtess_train
-        List<String> cmd = getCommand(cmdtess_train);
-        for (String file : files) {
-            cmd.set(1, file);
-            cmd.set(2, TextUtilities.stripExtension(file));
-            runCommand(cmd);
+        if (trFiles != null) {
+            addClusteringSteps(pipeline, trFiles.toArray(new String[0]));
         }
+        addDictionarySteps(pipeline);
+        return pipeline;
+    }
 
-        logger.info("Compute Character Set");
-        writeMessage("** Compute Character Set **");
-        //cmdunicharset_extractor
-        cmd = getCommand(cmdunicharset_extractor);
-        files = new File(inputDataDir).list(new FilenameFilter() {
-            @Override
-            public boolean accept(File dir, String filename) {
-                return filename.endsWith(".box");
+    /**
+     * Adds steps that make boxes, if requested, train Tesseract on them, and
+     * compute the character set.
+     *
+     * @return names of the .tr files available afterwards
+     */
+    private Set<String> addTrainingSteps(TrainingPipeline pipeline, boolean makeBoxes) throws IOException {
+        String[] images;
+        if (makeBoxes) {
+            images = getImageFiles();
+            if (images.length == 0) {
+                throw new RuntimeException("There are no training images.");
             }
-        });
-        cmd.addAll(Arrays.asList(files));
-        runCommand(cmd);
+        } else {
+            images = getImageFilesWithBox();
+            if (images.length == 0) {
+                throw new RuntimeException("There are no training image/box pairs.");
+            }
+        }
+
+        List<File> imageFiles = TrainingCache.files(inputDataDir, images);
+        List<File> boxFiles = TrainingCache.files(inputDataDir, replaceExtension(images, ".box"));
+        List<File> trainedFiles = TrainingCache.files(inputDataDir, replaceExtension(images, ".tr"));
 
+        if (makeBoxes) {
+            pipeline.addStep("makebox", null, StepType.MAKE_BOX, imageFiles, boxFiles, () -> makeBox(TrainingMode.Make_Box_File));
+        }
+
+        List<File> inputs = new ArrayList<File>(imageFiles);
+        inputs.addAll(boxFiles);
+        pipeline.addStep("box.train", null, StepType.TRAIN, inputs, trainedFiles, () -> runTraining());
+
+        Set<String> boxes = listFiles(".box");
+        boxes.addAll(Arrays.asList(replaceExtension(images, ".box")));
+        final String[] boxNames = boxes.toArray(new String[0]);
+        //cmdunicharset_extractor
+        List<String> extractorCmd = getCommand(cmdunicharset_extractor);
+        extractorCmd.addAll(Arrays.asList(boxNames));
         //set_unicharset_properties
+        List<String> propertiesCmd = null;
         if (new File(this.tessDir, "set_unicharset_properties.exe").exists() || new File(this.tessDir, "set_unicharset_properties").exists()) {
-            logger.info("Set Character Set Properties");
-            writeMessage("** Set Character Set Properties **");
-            cmd = getCommand(String.format(cmdset_unicharset_properties, inputDataDir));
-            runCommand(cmd);
+            propertiesCmd = getCommand(String.format(cmdset_unicharset_properties, inputDataDir));
         }
+        final List<String> setPropertiesCmd = propertiesCmd;
+        pipeline.addStep("unicharset", getCacheKey(extractorCmd, setPropertiesCmd), StepType.UNICHARSET, TrainingCache.files(inputDataDir, boxNames), TrainingCache.files(inputDataDir, "unicharset"), () -> {
+            logger.info("Compute Character Set");
+            writeMessage("** Compute Character Set **");
+            runCommand(extractorCmd);
+
+            if (setPropertiesCmd != null) {
+                logger.info("Set Character Set Properties");
+                writeMessage("** Set Character Set Properties **");
+                runCommand(setPropertiesCmd);
+            }
+        });
 
 //        if (rtl) {
 //            //fix Unicode character directionality in unicharset
@@ -230,112 +302,227 @@ public class TessTrainer {
 //            writeMessage("Fixed unicharset's Unicode character directionality.\n");
 //            fixUniCharDirectionality();
 //        }
-        runShapeClustering();
+        Set<String> trFiles = listFiles(".tr");
+        trFiles.addAll(Arrays.asList(replaceExtension(images, ".tr")));
+        return trFiles;
     }
 
     /**
-     * Perform training from shape clustering on...
+     * Runs Tesseract in training mode on image/box pairs whose .tr file is
+     * not up to date.
      *
      * @throws Exception
      */
-    void runShapeClustering() throws Exception {
-        String[] files = new File(inputDataDir).list(new FilenameFilter() {
-            @Override
-            public boolean accept(File dir, String filename) {
-                return filename.endsWith(".tr");
-            }
-        });
+    void runTraining() throws Exception {
+        String[] files = getImageFilesWithBox();
 
         if (files.length == 0) {
-            throw new RuntimeException("There are no .tr files. Need to train Tesseract first.");
+            throw new RuntimeException("There are no training image/box pairs.");
         }
 
-        logger.info("Shape Clustering");
-        writeMessage("** Shape Clustering **");
-        //cmdshapeclustering
-        List<String> cmd = getCommand(String.format(cmdshapeclustering, lang));
-        cmd.addAll(Arrays.asList(files));
-        runCommand(cmd);
+        logger.info("Run Tesseract for Training");
+        writeMessage("** Run Tesseract for Training **");
+        //cmdtess_train
+        List<String> cmd = getCommand(cmdtess_train);
+        List<String> staleFiles = new ArrayList<String>();
+        for (String file : files) {
+            if (!isUpToDate(getFileCommand(cmd, file), trainInputs(file), trainOutputs(file))) {
+                staleFiles.add(file);
+            }
+        }
+        if (staleFiles.size() < files.length) {
+            writeMessage(String.format("%d of %d .tr files are up to date.", files.length - staleFiles.size(), files.length));
+        }
+        runCommands(getFileCommands(cmd, staleFiles.toArray(new String[0])));
+        for (String file : staleFiles) {
+            record(getFileCommand(cmd, file), trainInputs(file), trainOutputs(file));
+        }
+    }
 
-        logger.info("MF Training");
-        writeMessage("** MF Training **");
+    /**
+     * Adds clustering steps. Shape clustering and MF training run in sequence,
+     * since the latter reads the shape table; CN training only needs the .tr
+     * files and runs alongside.
+     */
+    private void addClusteringSteps(TrainingPipeline pipeline, String[] trFiles) {
+        List<File> trainedFiles = TrainingCache.files(inputDataDir, trFiles);
+        List<File> inputs = new ArrayList<File>(trainedFiles);
+        inputs.addAll(TrainingCache.files(inputDataDir, lang + ".font_properties", "unicharset"));
+
+        //cmdshapeclustering
+        List<String> shapeCmd = getCommand(String.format(cmdshapeclustering, lang));
+        shapeCmd.addAll(Arrays.asList(trFiles));
         //cmdmftraining
-        cmd = getCommand(String.format(cmdmftraining, lang));
-        cmd.addAll(Arrays.asList(files));
-        runCommand(cmd);
+        List<String> mfCmd = getCommand(String.format(cmdmftraining, lang));
+        mfCmd.addAll(Arrays.asList(trFiles));
+        pipeline.addStep("shapeclustering/mftraining", getCacheKey(shapeCmd, mfCmd), StepType.CLUSTERING, inputs,
+                TrainingCache.files(inputDataDir, lang + ".shapetable", lang + ".inttemp", lang + ".pffmtable", lang + ".unicharset"), () -> {
+            logger.info("Shape Clustering");
+            writeMessage("** Shape Clustering **");
+            runCommand(shapeCmd);
+
+            logger.info("MF Training");
+            writeMessage("** MF Training **");
+            runCommand(mfCmd);
+
+            logger.info("Rename files");
+            renameFile("inttemp");
+            renameFile("pffmtable");
+            renameFile("shapetable");
+        });
 
-        logger.info("CN Training");
-        writeMessage("** CN Training **");
         //cmdcntraining
-        cmd = getCommand(cmdcntraining);
-        cmd.addAll(Arrays.asList(files));
-        runCommand(cmd);
-
-        logger.info("Rename files");
-        renameFile("inttemp");
-        renameFile("pffmtable");
-        renameFile("normproto");
-        renameFile("shapetable");
-
-        runDictionary();
+        List<String> cnCmd = getCommand(cmdcntraining);
+        cnCmd.addAll(Arrays.asList(trFiles));
+        pipeline.addStep("cntraining", getCacheKey(cnCmd), StepType.CLUSTERING, trainedFiles, TrainingCache.files(inputDataDir, lang + ".normproto"), () -> {
+            logger.info("CN Training");
+            writeMessage("** CN Training **");
+            runCommand(cnCmd);
+            renameFile("normproto");
+        });
     }
 
     /**
-     * Perform training from dictionary on...
-     *
-     * @throws Exception
+     * Adds steps that build the dawgs, which are independent of each other,
+     * and combine all data files into traineddata.
      */
-    void runDictionary() throws Exception {
-        if (!new File(inputDataDir, lang + ".unicharset").exists()) {
-            String msg = String.format("There is no %1$s.unicharset. Need to train Tesseract first.", lang);
-            throw new RuntimeException(msg);
-        }
+    private void addDictionarySteps(TrainingPipeline pipeline) {
+        List<File> components = new ArrayList<File>(TrainingCache.files(inputDataDir,
+                lang + ".unicharset", lang + ".inttemp", lang + ".pffmtable", lang + ".normproto", lang + ".shapetable"));
 
-        logger.info("Dictionary Data");
-        writeMessage("** Dictionary Data **");
         //cmdwordlist2dawg
-        List<String> cmd = getCommand(String.format(cmdwordlist2dawg, lang, (rtl ? "-r 1" : "")));
-        runCommand(cmd);
+        components.addAll(addDawgStep(pipeline, getCommand(String.format(cmdwordlist2dawg, lang, (rtl ? "-r 1" : ""))), ".frequent_words_list", ".freq-dawg"));
 
         //cmdwordlist2dawg2
-        cmd = getCommand(String.format(cmdwordlist2dawg2, lang, (rtl ? "-r 1" : "")));
-        runCommand(cmd);
+        components.addAll(addDawgStep(pipeline, getCommand(String.format(cmdwordlist2dawg2, lang, (rtl ? "-r 1" : ""))), ".words_list", ".word-dawg"));
 
         //cmdpunc2dawg
         if (new File(inputDataDir, lang + ".punc").exists()) {
-            cmd = getCommand(String.format(cmdpunc2dawg, lang, (rtl ? "-r 2" : "")));
-            runCommand(cmd);
+            components.addAll(addDawgStep(pipeline, getCommand(String.format(cmdpunc2dawg, lang, (rtl ? "-r 2" : ""))), ".punc", ".punc-dawg"));
         }
 
         //cmdnumber2dawg
         if (new File(inputDataDir, lang + ".numbers").exists()) {
-            cmd = getCommand(String.format(cmdnumber2dawg, lang, ""));
-            runCommand(cmd);
+            components.addAll(addDawgStep(pipeline, getCommand(String.format(cmdnumber2dawg, lang, "")), ".numbers", ".number-dawg"));
         }
 
         //cmdbigrams2dawg
         if (new File(inputDataDir, lang + ".word.bigrams").exists()) {
-            cmd = getCommand(String.format(cmdbigrams2dawg, lang, (rtl ? "-r 1" : "")));
-            runCommand(cmd);
+            components.addAll(addDawgStep(pipeline, getCommand(String.format(cmdbigrams2dawg, lang, (rtl ? "-r 1" : ""))), ".word.bigrams", ".bigram-dawg"));
         }
 
-        logger.info("Combine Data Files");
-        writeMessage("** Combine Data Files **");
-        //cmdcombine_tessdata
-        cmd = getCommand(String.format(cmdcombine_tessdata, lang));
-        runCommand(cmd);
+        for (File file : getComponentFiles()) {
+            if (!components.contains(file)) {
+                components.add(file);
+            }
+        }
 
         String traineddata = lang + ".traineddata";
-        logger.info("Moving generated traineddata file to tessdata folder");
-        writeMessage("** Moving generated traineddata file to tessdata folder **");
         File tessdata = new File(inputDataDir, "tessdata");
-        if (!tessdata.exists()) {
-            tessdata.mkdir();
+        File target = new File(tessdata, traineddata);
+        //cmdcombine_tessdata
+        List<String> combineCmd = getCommand(String.format(cmdcombine_tessdata, lang));
+        pipeline.addStep("combine_tessdata", getCacheKey(combineCmd), StepType.COMBINE, components, Arrays.asList(target), () -> {
+            logger.info("Combine Data Files");
+            writeMessage("** Combine Data Files **");
+            runCommand(combineCmd);
+
+            logger.info("Moving generated traineddata file to tessdata folder");
+            writeMessage("** Moving generated traineddata file to tessdata folder **");
+            if (!tessdata.exists()) {
+                tessdata.mkdir();
+            }
+            target.delete();
+            boolean success = new File(inputDataDir, traineddata).renameTo(target);
+        });
+    }
+
+    /**
+     * Adds a wordlist2dawg step.
+     *
+     * @return output of the step
+     */
+    private List<File> addDawgStep(TrainingPipeline pipeline, List<String> cmd, String wordlistExt, String dawgExt) {
+        List<File> outputs = TrainingCache.files(inputDataDir, lang + dawgExt);
+        String name = new File(cmd.get(0)).getName() + " " + String.join(" ", cmd.subList(1, cmd.size()));
+        pipeline.addStep(name, getCacheKey(cmd), StepType.DICTIONARY,
+                TrainingCache.files(inputDataDir, lang + wordlistExt, lang + ".unicharset"), outputs, () -> runCommand(cmd));
+        return outputs;
+    }
+
+    /**
+     * Gets component files to be combined into traineddata.
+     *
+     * @return existing <code>lang.*</code> files in the training folder
+     */
+    List<File> getComponentFiles() {
+        final String prefix = lang + ".";
+        String[] names = new File(inputDataDir).list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String filename) {
+                return filename.startsWith(prefix) && !filename.endsWith(".traineddata") && !filename.endsWith(".training_cache")
+                        && new File(dir, filename).isFile();
+            }
+        });
+        Arrays.sort(names);
+        return TrainingCache.files(inputDataDir, names);
+    }
+
+    /**
+     * Lists names of files in the training folder with the given extension.
+     */
+    private Set<String> listFiles(final String ext) {
+        String[] names = new File(inputDataDir).list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String filename) {
+                return filename.endsWith(ext);
+            }
+        });
+        return new TreeSet<String>(Arrays.asList(names));
+    }
+
+    private static String[] replaceExtension(String[] files, String ext) {
+        String[] result = new String[files.length];
+        for (int i = 0; i < files.length; i++) {
+            result[i] = TextUtilities.stripExtension(files[i]) + ext;
         }
-        boolean success = new File(inputDataDir, traineddata).renameTo(new File(tessdata, traineddata));
+        return result;
+    }
 
-        logger.info("Training Completed");
-        writeMessage("** Training Completed **");
+    private List<File> trainInputs(String imageFile) {
+        return TrainingCache.files(inputDataDir, imageFile, TextUtilities.stripExtension(imageFile) + ".box");
+    }
+
+    private List<File> trainOutputs(String imageFile) {
+        return TrainingCache.files(inputDataDir, TextUtilities.stripExtension(imageFile) + ".tr");
+    }
+
+    /**
+     * Gets the build cache key of commands run as one step: their full command
+     * lines, which include the location of the Tesseract executables.
+     *
+     * @param cmds commands; null ones are left out
+     * @return cache key
+     */
+    @SafeVarargs
+    private static String getCacheKey(List<String>... cmds) {
+        List<String> lines = new ArrayList<String>();
+        for (List<String> cmd : cmds) {
+            if (cmd != null) {
+                lines.add(String.join(" ", cmd));
+            }
+        }
+        return String.join(" && ", lines);
+    }
+
+    private boolean isUpToDate(List<String> cmd, List<File> inputs, List<File> outputs) throws IOException {
+        return cache != null && cache.isUpToDate(getCacheKey(cmd), inputs, outputs);
+    }
+
+    private void record(List<String> cmd, List<File> inputs, List<File> outputs) throws IOException {
+        if (cache != null) {
+            cache.record(getCacheKey(cmd), inputs, outputs);
+        }
     }
 
     /**
@@ -461,6 +648,36 @@ public class TessTrainer {
         return cmd;
     }
 
+    /**
+     * Gets a per-image command for each file, with image file and output base
+     * filled in.
+     *
+     * @param cmd command template
+     * @param files image files
+     * @return commands
+     */
+    List<List<String>> getFileCommands(List<String> cmd, String[] files) {
+        List<List<String>> cmds = new ArrayList<List<String>>(files.length);
+        for (String file : files) {
+            cmds.add(getFileCommand(cmd, file));
+        }
+        return cmds;
+    }
+
+    /**
+     * Gets a per-image command with image file and output base filled in.
+     *
+     * @param cmd command template
+     * @param file image file
+     * @return command
+     */
+    List<String> getFileCommand(List<String> cmd, String file) {
+        List<String> fileCmd = new ArrayList<String>(cmd);
+        fileCmd.set(1, file);
+        fileCmd.set(2, TextUtilities.stripExtension(file));
+        return fileCmd;
+    }
+
     /**
      * Runs given command.
      *
@@ -470,47 +687,171 @@ public class TessTrainer {
     void runCommand(List<String> cmd) throws Exception {
         logger.log(Level.INFO, "Command: {0}", cmd.toString());
         writeMessage(cmd.toString());
-        pb.command(cmd);
-        Process process = pb.start();
+        CommandResult result = execute(cmd, this::writeMessage);
+        checkResult(result);
+    }
+
+    /**
+     * Runs independent commands on a pool of up to <code>concurrency</code>
+     * processes. Results are checked as commands complete, in any order, but
+     * output is buffered and written in command order. On the first failure,
+     * or if the calling thread is interrupted, the remaining commands are
+     * cancelled and their processes destroyed.
+     *
+     * @param cmds
+     * @throws Exception
+     */
+    void runCommands(List<List<String>> cmds) throws Exception {
+        int nThreads = Math.min(concurrency, cmds.size());
+        if (nThreads <= 1) {
+            for (List<String> cmd : cmds) {
+                runCommand(cmd);
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        CompletionService<CommandResult> completionService = new ExecutorCompletionService<CommandResult>(executor);
+        List<Future<CommandResult>> futures = new ArrayList<Future<CommandResult>>(cmds.size());
+        try {
+            for (final List<String> cmd : cmds) {
+                futures.add(completionService.submit(() -> execute(cmd, null)));
+            }
+
+            Map<List<String>, CommandResult> results = new IdentityHashMap<List<String>, CommandResult>();
+            int next = 0; // first command whose output has not been written
+            for (int i = 0; i < cmds.size(); i++) {
+                CommandResult result;
+                try {
+                    result = completionService.take().get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Exception) {
+                        throw (Exception) cause;
+                    }
+                    throw e;
+                }
+                if (result.exitValue != 0) {
+                    writeResult(result); // out of order, as the rest are abandoned
+                    checkResult(result);
+                }
+                results.put(result.cmd, result);
+                while (next < cmds.size() && results.containsKey(cmds.get(next))) {
+                    writeResult(results.remove(cmds.get(next++)));
+                }
+            }
+        } finally {
+            executor.shutdownNow(); // interrupts running commands
+            for (Future<CommandResult> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Writes a command and its output.
+     *
+     * @param result
+     */
+    private void writeResult(CommandResult result) {
+        logger.log(Level.INFO, "Command: {0}", result.cmd.toString());
+        writeMessage(result.cmd.toString());
+        if (result.omittedLines > 0) {
+            writeMessage(String.format("... (%d lines omitted)", result.omittedLines));
+        }
+        writeMessage(result.output);
+    }
+
+    /**
+     * Runs a command in its own process. Output lines are streamed to the
+     * given consumer as they arrive; only the last lines are kept in the
+     * result. The process is destroyed if the calling thread is interrupted.
+     *
+     * @param cmd
+     * @param lineConsumer receiver of output lines; may be null
+     * @return exit value and last lines of output
+     * @throws Exception
+     */
+    CommandResult execute(List<String> cmd, Consumer<String> lineConsumer) throws Exception {
+        ProcessBuilder builder = new ProcessBuilder(cmd);
+        builder.directory(pb.directory());
+        builder.redirectErrorStream(true);
+        Process process = builder.start();
 
         // any output?
-        StreamGobbler outputGobbler = new StreamGobbler(process.getInputStream());
+        StreamGobbler outputGobbler = new StreamGobbler(process.getInputStream(), lineConsumer, StreamGobbler.DEFAULT_TAIL_LINES);
         outputGobbler.start();
 
-        int w = process.waitFor();
-        logger.log(Level.INFO, "Exit value = {0}", w);
-        writeMessage(outputGobbler.getMessage());
+        try {
+            int w = process.waitFor();
+            outputGobbler.join();
+            logger.log(Level.INFO, "Exit value = {0}", w);
+            long omitted = outputGobbler.getLineCount() - StreamGobbler.DEFAULT_TAIL_LINES;
+            return new CommandResult(cmd, w, outputGobbler.getMessage(), Math.max(0, omitted));
+        } catch (InterruptedException e) {
+            process.destroy();
+            throw e;
+        }
+    }
 
-        if (w != 0) {
+    /**
+     * Throws if a command has failed.
+     *
+     * @param result
+     */
+    private void checkResult(CommandResult result) {
+        if (result.exitValue != 0) {
             String msg;
-            if (cmd.get(0).contains("shapeclustering")) {
+            if (result.cmd.get(0).contains("shapeclustering")) {
                 msg = "An error has occurred. font_properties could be missing a font entry.";
-            } else if (cmd.get(0).contains("text2image")) {
-                msg = "text2image error.\n" + outputGobbler.getMessage().replace(",.", ".") + "Try a different font or use alternate methods.";
+            } else if (result.cmd.get(0).contains("text2image")) {
+                msg = "text2image error.\n" + result.output.replace(",.", ".") + "Try a different font or use alternate methods.";
             } else {
-                msg = outputGobbler.getMessage();
+                msg = result.output;
             }
             throw new RuntimeException(msg);
         }
     }
 
+    /**
+     * Outcome of a command.
+     */
+    static class CommandResult {
+
+        final List<String> cmd;
+        final int exitValue;
+        final String output; // last lines
+        final long omittedLines; // lines before those in output
+
+        CommandResult(List<String> cmd, int exitValue, String output, long omittedLines) {
+            this.cmd = cmd;
+            this.exitValue = exitValue;
+            this.output = output;
+            this.omittedLines = omittedLines;
+        }
+    }
+
     /**
      * Writes a message.
      *
      * @param message
      */
-    void writeMessage(String message) {
-        setText(message);
+    synchronized void writeMessage(String message) {
+        if (messageHandler != null) {
+            messageHandler.accept(message);
+        }
 //        System.out.println(message);
     }
 
-    private final StringProperty textProp = new SimpleStringProperty();
-
-    public StringProperty textProperty() {
-        return textProp;
-    }
+    private Consumer<String> messageHandler;
 
-    private void setText(String text) {
-        textProperty().set(text);
+    /**
+     * Sets receiver of progress messages and command output, one line or
+     * message per call. It is called on worker threads.
+     *
+     * @param messageHandler
+     */
+    public void setMessageHandler(Consumer<String> messageHandler) {
+        this.messageHandler = messageHandler;
     }
 }
@@ -0,0 +1,236 @@
+/**
+ * Copyright @ 2016 Quan Nguyen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package net.sourceforge.tessboxeditor;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineMetrics;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javafx.geometry.Rectangle2D;
+import net.sourceforge.tessboxeditor.datamodel.TessBox;
+import net.sourceforge.tessboxeditor.datamodel.TessBoxCollection;
+import net.sourceforge.tessboxeditor.utilities.Paginator;
+
+/**
+ * Renders text pages with Java2D. Graphemes are laid out in word-wrapped lines
+ * within the page margins, like a <code>TextFlow</code> does, and their boxes
+ * are computed from the rendered glyph outlines. No JavaFX scene graph is
+ * involved, so pages can be rendered on any thread, in parallel.
+ */
+public class TextPageRenderer {
+
+    private final Font font;
+    private final int width, height;
+    private final int margin;
+    private final int lineSpacing;
+    private final boolean isAntiAliased;
+
+    /**
+     * Creates a renderer.
+     *
+     * @param font font to render with
+     * @param tracking letter tracking
+     * @param width page width
+     * @param height page height
+     * @param margin margin of text within page
+     * @param lineSpacing extra space between lines
+     * @param antiAliased whether to render anti-aliased grayscale pages
+     * instead of bitonal ones
+     */
+    public TextPageRenderer(Font font, float tracking, int width, int height, int margin, int lineSpacing, boolean antiAliased) {
+        this.font = font.deriveFont(Collections.singletonMap(TextAttribute.TRACKING, tracking));
+        this.width = width;
+        this.height = height;
+        this.margin = margin;
+        this.lineSpacing = lineSpacing;
+        this.isAntiAliased = antiAliased;
+    }
+
+    /**
+     * Converts a JavaFX font to its AWT equivalent.
+     *
+     * @param font JavaFX font
+     * @return AWT font of the same family, style, and size
+     */
+    public static Font toAwtFont(javafx.scene.text.Font font) {
+        int style = Font.PLAIN;
+        if (font.getStyle().contains("Bold")) {
+            style |= Font.BOLD;
+        }
+        if (font.getStyle().contains("Italic")) {
+            style |= Font.ITALIC;
+        }
+        return new Font(font.getFamily(), style, 1).deriveFont((float) font.getSize());
+    }
+
+    /**
+     * Renders text. Text that does not fit on one page continues onto
+     * additional pages.
+     *
+     * @param graphemes text, one grapheme per element
+     * @return rendered pages; at least one
+     */
+    public List<RenderedPage> render(List<String> graphemes) {
+        FontRenderContext frc = new FontRenderContext(null, isAntiAliased, true);
+        LineMetrics metrics = font.getLineMetrics("Xg", frc);
+        float ascent = metrics.getAscent();
+        float descent = metrics.getDescent();
+        float lineHeight = ascent + descent + lineSpacing;
+        float maxWidth = width - margin * 2;
+        float spaceAdvance = new TextLayout(" ", font, frc).getAdvance();
+
+        // lay out graphemes in lines
+        List<Glyph> glyphs = new ArrayList<Glyph>(graphemes.size());
+        int line = 0;
+        float x = 0;
+        int i = 0;
+        while (i < graphemes.size()) {
+            String ch = graphemes.get(i);
+            if (ch.isEmpty()) {
+                i++;
+            } else if (ch.charAt(0) == '\n' || ch.charAt(0) == '\r') {
+                line++;
+                x = 0;
+                i++;
+            } else if (Character.isWhitespace(ch.codePointAt(0))) {
+                x += spaceAdvance; // trailing spaces may hang beyond the margin
+                i++;
+            } else {
+                // a word is wrapped as a whole; an overlong one is broken between graphemes
+                int start = glyphs.size();
+                float wordWidth = 0;
+                for (; i < graphemes.size(); i++) {
+                    ch = graphemes.get(i);
+                    if (ch.isEmpty() || Character.isWhitespace(ch.codePointAt(0))) {
+                        break;
+                    }
+                    Glyph glyph = new Glyph(ch, new TextLayout(ch, font, frc));
+                    glyphs.add(glyph);
+                    wordWidth += glyph.layout.getAdvance();
+                }
+                if (x > 0 && x + wordWidth > maxWidth) {
+                    line++;
+                    x = 0;
+                }
+                for (Glyph glyph : glyphs.subList(start, glyphs.size())) {
+                    float advance = glyph.layout.getAdvance();
+                    if (x > 0 && x + advance > maxWidth) {
+                        line++;
+                        x = 0;
+                    }
+                    glyph.line = line;
+                    glyph.x = x;
+                    x += advance;
+                }
+            }
+        }
+
+        // break at line boxes, so that a line is never split across pages
+        double[] tops = new double[glyphs.size()];
+        double[] bottoms = new double[glyphs.size()];
+        for (int k = 0; k < tops.length; k++) {
+            tops[k] = glyphs.get(k).line * lineHeight;
+            bottoms[k] = tops[k] + ascent + descent;
+        }
+
+        List<RenderedPage> pages = new ArrayList<RenderedPage>();
+        for (int[] range : Paginator.paginate(tops, bottoms, height - margin * 2)) {
+            int firstLine = range[0] < range[1] ? glyphs.get(range[0]).line : 0;
+            BufferedImage bi = new BufferedImage(width, height, isAntiAliased ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_BYTE_BINARY);
+            TessBoxCollection boxCol = new TessBoxCollection();
+            Graphics2D g2d = bi.createGraphics();
+            try {
+                g2d.setColor(Color.WHITE);
+                g2d.fillRect(0, 0, width, height);
+                g2d.setColor(Color.BLACK);
+                g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                        isAntiAliased ? RenderingHints.VALUE_TEXT_ANTIALIAS_ON : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+                g2d.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+
+                Rectangle page = new Rectangle(0, 0, width, height);
+                for (Glyph glyph : glyphs.subList(range[0], range[1])) {
+                    float gx = margin + glyph.x;
+                    float gy = margin + ascent + (glyph.line - firstLine) * lineHeight;
+                    glyph.layout.draw(g2d, gx, gy);
+
+                    Rectangle bounds = glyph.layout.getPixelBounds(null, gx, gy).intersection(page);
+                    if (bounds.width <= 0 || bounds.height <= 0) {
+                        // skip bad boxes
+                        continue;
+                    }
+                    boxCol.add(new TessBox(glyph.ch, new Rectangle2D(bounds.x, bounds.y, bounds.width, bounds.height), (short) 0));
+                }
+            } finally {
+                g2d.dispose();
+            }
+            pages.add(new RenderedPage(bi, boxCol));
+        }
+        return pages;
+    }
+
+    /**
+     * Positioned grapheme.
+     */
+    private static class Glyph {
+
+        final String ch;
+        final TextLayout layout;
+        int line;
+        float x;
+
+        Glyph(String ch, TextLayout layout) {
+            this.ch = ch;
+            this.layout = layout;
+        }
+    }
+
+    /**
+     * Image and boxes of a rendered page.
+     */
+    public static class RenderedPage {
+
+        private final BufferedImage image;
+        private final TessBoxCollection boxes;
+
+        public RenderedPage(BufferedImage image, TessBoxCollection boxes) {
+            this.image = image;
+            this.boxes = boxes;
+        }
+
+        /**
+         * @return the page image
+         */
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        /**
+         * @return the boxes of the page
+         */
+        public TessBoxCollection getBoxes() {
+            return boxes;
+        }
+    }
+}
@@ -15,35 +15,27 @@
  */
 package net.sourceforge.tessboxeditor;
 
-import java.awt.Graphics2D;
 import java.awt.font.TextAttribute;
 import java.awt.image.BufferedImage;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
-import java.util.logging.Level;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
-import javafx.embed.swing.SwingFXUtils;
 import javafx.geometry.BoundingBox;
 import javafx.geometry.Bounds;
-import javafx.geometry.Insets;
-import javafx.geometry.Rectangle2D;
-import javafx.scene.Node;
-import javafx.scene.Scene;
-import javafx.scene.SnapshotParameters;
-import javafx.scene.image.WritableImage;
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Rectangle;
-import javafx.scene.shape.Shape;
 import javafx.scene.text.Font;
-import javafx.scene.text.Text;
-import javafx.scene.text.TextFlow;
 
+import net.sourceforge.tessboxeditor.TextPageRenderer.RenderedPage;
+import net.sourceforge.tessboxeditor.datamodel.BoxFileWriter;
 import net.sourceforge.tessboxeditor.datamodel.TessBox;
 import net.sourceforge.tessboxeditor.datamodel.TessBoxCollection;
 import net.sourceforge.tessboxeditor.utilities.ImageUtils;
-import net.sourceforge.tess4j.util.ImageIOHelper;
+import net.sourceforge.tessboxeditor.utilities.MultipageTiffWriter;
 import static net.sourceforge.tessboxeditor.utilities.Utils.deriveFont;
 import net.sourceforge.vietocr.util.Utils;
 
@@ -51,10 +43,8 @@ public class TiffBoxGeneratorFX {
 
     static final String EOL = System.getProperty("line.separator");
     private final List<List<String>> textPages;
-    private final List<BufferedImage> imagePages = new ArrayList<>();
-    private final List<TessBoxCollection> boxPages = new ArrayList<>();
     private final Font font;
-    private int width, height;
+    private final int width, height;
     private int noiseAmount;
     private int margin = 100;
     private String fileName = "fontname.exp0";
@@ -65,7 +55,6 @@ public class TiffBoxGeneratorFX {
     private int leading = 12;
     private boolean isAntiAliased;
     private final File baseDir = Utils.getBaseDir(TiffBoxGeneratorFX.this);
-    private final TextFlow textFlow;
 
     private final static Logger logger = Logger.getLogger(TiffBoxGeneratorFX.class.getName());
 
@@ -74,59 +63,22 @@ public class TiffBoxGeneratorFX {
         this.font = deriveFont(font, font.getSize() * 4); // adjustment
         this.width = width;
         this.height = height;
-        textFlow = new TextFlow();
-        textFlow.setPrefWidth(width);
-        textFlow.setPadding(new Insets(margin));
-        textFlow.setStyle("-fx-letter-spacing: " + tracking); // no effect; not supported yet in JDK8u101
-        textFlow.setLineSpacing(leading + 4); // adjustment
-    }
-
-    public void create() {
-        this.layoutPages();
-        this.saveMultipageTiff();
-        this.saveBoxFile();
-    }
-
-    String createFileName(Font font) {
-        return font.getFamily().replace(" ", "").toLowerCase() + (font.getStyle().contains("Bold") ? "b" : "") + (font.getStyle().contains("Italic") ? "i" : "");
     }
 
     /**
-     * Formats box content.
+     * Renders the text pages and saves them as TIFF/Box pair. Does not involve
+     * the scene graph, so may be called off the FX Application thread.
      *
-     * @return
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws ExecutionException
      */
-    private String formatOutputString() {
-        StringBuilder sb = new StringBuilder();
-//        String combiningSymbols = readCombiningSymbols();
-        for (short pageIndex = 0; pageIndex < imagePages.size(); pageIndex++) {
-            TessBoxCollection boxCol = boxPages.get(pageIndex);
-//            boxCol.setCombiningSymbols(combiningSymbols);
-//            boxCol.combineBoxes();
-
-            for (TessBox box : boxCol.toList()) {
-                Rectangle2D rect = box.getRect();
-                sb.append(String.format("%s %.0f %.0f %.0f %.0f %d", box.getCharacter(), rect.getMinX(), height - rect.getMinY() - rect.getHeight(), rect.getMinX() + rect.getWidth(), height - rect.getMinY(), pageIndex)).append(EOL);
-            }
-        }
-//        if (isTess2_0Format) {
-//            return sb.toString().replace(" 0" + EOL, EOL); // strip the ending zeroes
-//        }
-        return sb.toString();
+    public void create() throws IOException, InterruptedException, ExecutionException {
+        this.writePages();
     }
 
-    /**
-     * Gets bounding box of a Text node.
-     *
-     * @param text
-     * @return bounding box
-     */
-    Bounds getBoundingBox(Text text) {
-        Bounds tb = text.getBoundsInParent();
-        Rectangle stencil = new Rectangle(tb.getMinX(), tb.getMinY(), tb.getWidth(), tb.getHeight());
-        Shape intersection = Shape.intersect(text, stencil);
-        Bounds ib = intersection.getBoundsInParent();
-        return ib;
+    String createFileName(Font font) {
+        return font.getFamily().replace(" ", "").toLowerCase() + (font.getStyle().contains("Bold") ? "b" : "") + (font.getStyle().contains("Italic") ? "i" : "");
     }
 
     /**
@@ -136,7 +88,7 @@ public class TiffBoxGeneratorFX {
      * @param rect
      * @param bi
      */
-    private Bounds tightenBoundingBox(Bounds rectShape, BufferedImage bi) {
+    Bounds tightenBoundingBox(Bounds rectShape, BufferedImage bi) {
         java.awt.Rectangle rect = new java.awt.Rectangle((int) rectShape.getMinX(), (int) rectShape.getMinY(), (int) Math.ceil(rectShape.getWidth()), (int) Math.ceil(rectShape.getHeight()));
 
         // left
@@ -207,123 +159,72 @@ public class TiffBoxGeneratorFX {
     }
 
     /**
-     * Creates box file.
+     * Renders text pages in parallel and streams their images and boxes to
+     * the TIFF/Box files in page order. At most as many pages as there are
+     * workers are held in memory at any time.
+     *
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws ExecutionException
      */
-    private void saveBoxFile() {
-        try {
-            try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(outputFolder, fileName + ".box")), StandardCharsets.UTF_8))) {
-                out.write(formatOutputString());
+    private void writePages() throws IOException, InterruptedException, ExecutionException {
+        final TextPageRenderer renderer = new TextPageRenderer(TextPageRenderer.toAwtFont(font), tracking, width, height, margin, leading + 4, isAntiAliased); // adjustment
+        int nThreads = Math.max(1, Math.min(textPages.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        String compression = (isAntiAliased || noiseAmount != 0) ? "LZW" : "CCITT T.6"; // CCITT T.6 for bitonal; LZW for others
+
+        try (MultipageTiffWriter tiffWriter = new MultipageTiffWriter(new File(outputFolder, fileName + ".tif"), compression);
+                BoxFileWriter boxWriter = new BoxFileWriter(new File(outputFolder, fileName + ".box"))) {
+            boxWriter.setEol(EOL);
+            Deque<Future<List<RenderedPage>>> pending = new ArrayDeque<Future<List<RenderedPage>>>();
+            for (final List<String> textPage : textPages) {
+                if (pending.size() >= nThreads) {
+                    writePages(pending.poll().get(), tiffWriter, boxWriter);
+                }
+                pending.add(executor.submit(() -> renderPage(renderer, textPage)));
             }
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, e.getMessage(), e);
-        }
-    }
-
-    /**
-     * Add Text nodes to TextFlow, which is one per page.
-     */
-    private void layoutPages() {
-        boxPages.clear();
-        imagePages.clear();
-
-        Scene scene = new Scene(textFlow, width, height);
-
-        for (List<String> textPage : textPages) {
-            List<Text> texts = new ArrayList<Text>();
-            textFlow.getChildren().clear();
-
-            for (String ch : textPage) {
-                // each ch can have multiple Unicode codepoints
-                Text text = new Text(ch);
-                text.setFont(font);
-                texts.add(text);
+            while (!pending.isEmpty()) {
+                writePages(pending.poll().get(), tiffWriter, boxWriter);
             }
-
-            textFlow.getChildren().addAll(texts);
-
-//            StackPane pane = new StackPane();
-//            pane.setAlignment(Pos.TOP_LEFT);
-//            pane.getChildren().addAll(textFlow);
-            // No need to show
-//        Stage stage = new Stage();
-//        stage.setTitle("TIFF/Boxes");
-//        stage.setScene(scene);
-//        stage.show();
-            drawPage();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        } finally {
+            executor.shutdownNow();
         }
     }
 
     /**
-     * Takes snapshot of each text flow and store as <code>BufferedImage</code>.
+     * Renders a text page, injecting noise if requested.
      */
-    private void drawPage() {
-        BufferedImage bi;// = new BufferedImage(width, height, isAntiAliased ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_BYTE_BINARY);
-        final SnapshotParameters snapshotParameters = new SnapshotParameters();
-        snapshotParameters.setFill(Color.WHITE);
-
-        WritableImage snapshot = textFlow.snapshot(snapshotParameters, null);
-        bi = SwingFXUtils.fromFXImage(snapshot, null);
-        width = bi.getWidth();
-        height = bi.getHeight();
-        bi = redraw(bi);
-        imagePages.add(bi);
-
-        TessBoxCollection boxCol = new TessBoxCollection(); // for each page
-        boxPages.add(boxCol);
-        short pageNum = 0;
-        List<Node> nodes = textFlow.getChildren();
-        for (int i = 0; i < nodes.size(); i++) {
-            Text text = (Text) nodes.get(i);
-            String ch = text.getText();
-            if (ch.length() == 0 || Character.isWhitespace(ch.charAt(0))) {
-                // skip spaces
-                continue;
-            }
-
-            // get bounding box for each character
-            Bounds bounds = getBoundingBox(text);
-//            System.out.println(bounds);
-            if (bounds.getWidth() <= 0 || bounds.getHeight() <= 0) {
-                // skip bad boxes
-                continue;
+    private List<RenderedPage> renderPage(TextPageRenderer renderer, List<String> textPage) {
+        List<RenderedPage> pages = renderer.render(textPage);
+        if (noiseAmount != 0) {
+            for (int i = 0; i < pages.size(); i++) {
+                RenderedPage page = pages.get(i);
+                pages.set(i, new RenderedPage(ImageUtils.addNoise(page.getImage(), noiseAmount), page.getBoxes()));
             }
-
-//            bounds = tightenBoundingBox(bounds, bi);
-            boxCol.add(new TessBox(ch, new Rectangle2D(bounds.getMinX(), bounds.getMinY(), bounds.getWidth(), bounds.getHeight()), pageNum));
         }
+        return pages;
     }
 
     /**
-     * Reduces bit depth of 32bpp snapshot from to 8bpp or 1bpp depending on
-     * anti-aliased mode selection.
-     *
-     * @param bi
-     * @return
+     * Appends rendered pages to the TIFF/Box files.
      */
-    BufferedImage redraw(BufferedImage bi) {
-        BufferedImage newImage = new BufferedImage(bi.getWidth(), bi.getHeight(), isAntiAliased ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_BYTE_BINARY);
-        Graphics2D g2d = newImage.createGraphics();
-        g2d.drawImage(bi, 0, 0, null);
-        g2d.dispose();
-        return newImage;
-    }
-
-    /**
-     * Creates a multi-page TIFF image.
-     */
-    private void saveMultipageTiff() {
-        try {
-            File tiffFile = new File(outputFolder, fileName + ".tif");
-            tiffFile.delete();
-            BufferedImage[] images = imagePages.toArray(new BufferedImage[imagePages.size()]);
-            if (noiseAmount != 0) {
-                for (int i = 0; i < images.length; i++) {
-                    images[i] = ImageUtils.addNoise(images[i], noiseAmount);
-                }
+    private void writePages(List<RenderedPage> pages, MultipageTiffWriter tiffWriter, BoxFileWriter boxWriter) throws IOException {
+        for (RenderedPage page : pages) {
+            short pageIndex = (short) tiffWriter.getPageCount();
+            TessBoxCollection boxCol = page.getBoxes();
+            for (TessBox box : boxCol.toList()) {
+                box.setPage(pageIndex);
             }
-            ImageIOHelper.mergeTiff(images, tiffFile, (isAntiAliased || noiseAmount != 0) ? "LZW" : "CCITT T.6");  // CCITT T.6 for bitonal; LZW for others);
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, e.getMessage(), e);
+//            String combiningSymbols = readCombiningSymbols();
+//            boxCol.setCombiningSymbols(combiningSymbols);
+//            boxCol.combineBoxes();
+            tiffWriter.writePage(page.getImage());
+            boxWriter.writePage(boxCol, pageIndex, page.getImage().getHeight());
         }
     }
 
@@ -346,7 +247,6 @@ public class TiffBoxGeneratorFX {
      */
     public void setTracking(float tracking) {
         this.tracking = tracking;
-        textFlow.setStyle("-fx-letter-spacing: " + tracking); // no effect; not supported yet in JDK8u91
     }
 
     /**
@@ -356,7 +256,6 @@ public class TiffBoxGeneratorFX {
      */
     public void setLeading(int leading) {
         this.leading = leading;
-        textFlow.setLineSpacing(leading + 4); // adjustment
     }
 
     /**
@@ -393,6 +292,5 @@ public class TiffBoxGeneratorFX {
      */
     public void setMargin(int margin) {
         this.margin = margin;
-        textFlow.setPadding(new Insets(margin));
     }
 }
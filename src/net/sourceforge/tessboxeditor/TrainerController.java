@@ -27,11 +27,14 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Optional;
 import java.util.ResourceBundle;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.prefs.Preferences;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
-import javafx.beans.value.ChangeListener;
-import javafx.beans.value.ObservableValue;
 import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -42,6 +45,7 @@ import javafx.scene.control.Alert.AlertType;
 import javafx.scene.text.Font;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
+import javafx.util.Duration;
 import net.sourceforge.tessboxeditor.utilities.Utils;
 
 public class TrainerController implements Initializable {
@@ -63,6 +67,8 @@ public class TrainerController implements Initializable {
     @FXML
     private ComboBox<TrainingMode> cbOps;
     @FXML
+    private Spinner<Integer> spnConcurrency;
+    @FXML
     private Button btnTrain;
     @FXML
     protected Button btnValidate;
@@ -88,6 +94,11 @@ public class TrainerController implements Initializable {
 
     private TrainingWorker trainWorker;
 
+    private static final int OUTPUT_UPDATE_INTERVAL = 100; // milliseconds
+    private static final int MAX_OUTPUT_LENGTH = 1000000; // characters kept in output area
+    private static final int MAX_CONCURRENCY = 64; // tesseract processes
+    private final Queue<String> pendingOutput = new ConcurrentLinkedQueue<String>();
+
     /**
      * Initializes the controller class.
      */
@@ -120,6 +131,37 @@ public class TrainerController implements Initializable {
         cbOps.getItems().addAll(TrainingMode.values());
         cbOps.getSelectionModel().select(prefs.getInt("trainingMode", 0));
         chbRTL.setSelected(prefs.getBoolean("trainingRTL", false));
+        spnConcurrency.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(1, MAX_CONCURRENCY,
+                prefs.getInt("trainingConcurrency", Runtime.getRuntime().availableProcessors())));
+
+        // append queued output in batches, at most once per interval
+        Timeline outputTimeline = new Timeline(new KeyFrame(Duration.millis(OUTPUT_UPDATE_INTERVAL), e -> flushOutput()));
+        outputTimeline.setCycleCount(Animation.INDEFINITE);
+        outputTimeline.play();
+    }
+
+    /**
+     * Appends queued output lines to the output area, discarding the oldest
+     * text beyond the maximum length.
+     */
+    void flushOutput() {
+        if (pendingOutput.isEmpty()) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        String line;
+        while ((line = pendingOutput.poll()) != null) {
+            sb.append(line).append("\n");
+        }
+        if (sb.length() > MAX_OUTPUT_LENGTH) {
+            sb.delete(0, sb.length() - MAX_OUTPUT_LENGTH);
+            taOutput.clear();
+        }
+        taOutput.appendText(sb.toString());
+        int excess = taOutput.getLength() - MAX_OUTPUT_LENGTH;
+        if (excess > 0) {
+            taOutput.deleteText(0, excess);
+        }
     }
 
     @FXML
@@ -129,7 +171,7 @@ public class TrainerController implements Initializable {
         } else if (event.getSource() == btnCancel) {
             if (trainWorker != null && !trainWorker.isDone()) {
                 trainWorker.cancel(true);
-                taOutput.appendText("** Cancel Training **");
+                pendingOutput.add("** Cancel Training **");
             }
             this.btnCancel.setDisable(true);
         } else if (event.getSource() == btnValidate) {
@@ -247,22 +289,12 @@ public class TrainerController implements Initializable {
 
         public TrainingWorker() {
             trainer = new TessTrainer(tessDirectory, trainDataDirectory, tfLang.getText(), tfBootstrapLang.getText(), chbRTL.isSelected());
+            trainer.setConcurrency(getConcurrency());
             progressBar1.progressProperty().unbind();
             progressBar1.progressProperty().bind(this.progressProperty());
             labelStatus.textProperty().unbind();
             labelStatus.textProperty().bind(this.messageProperty());
-            trainer.textProperty().addListener(new ChangeListener<String>() {
-                @Override
-                public void changed(ObservableValue<? extends String> observable, String oldValue, String newValue) {
-                    Platform.runLater(new Runnable() {
-                        @Override
-                        public void run() {
-                            taOutput.appendText(newValue + "\n");
-//                        taOutput.positionCaret(taOutput.getLength());
-                        }
-                    });
-                }
-            });
+            trainer.setMessageHandler(pendingOutput::add);
 
             // listen for any failure during training
             this.exceptionProperty().addListener((observable, oldValue, newValue) -> {
@@ -357,6 +389,15 @@ public class TrainerController implements Initializable {
         // to be implemented in subclass
     }
 
+    /**
+     * Gets number of Tesseract processes, or engines, to run at once.
+     *
+     * @return
+     */
+    int getConcurrency() {
+        return spnConcurrency.getValue();
+    }
+
     void setFont(Font font) {
         this.taOutput.setFont(font);
     }
@@ -372,6 +413,7 @@ public class TrainerController implements Initializable {
         prefs.put("bootstrapLanguage", this.tfBootstrapLang.getText());
         prefs.putInt("trainingMode", this.cbOps.getSelectionModel().getSelectedIndex());
         prefs.putBoolean("trainingRTL", this.chbRTL.isSelected());
+        prefs.putInt("trainingConcurrency", this.spnConcurrency.getValue());
     }
 
 }
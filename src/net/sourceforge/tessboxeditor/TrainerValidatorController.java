@@ -17,7 +17,6 @@ package net.sourceforge.tessboxeditor;
 
 import java.io.File;
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.ResourceBundle;
 import java.util.logging.Logger;
@@ -34,11 +33,11 @@ import javafx.scene.control.ButtonType;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.Tooltip;
 import javafx.scene.layout.BorderPane;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.stage.Stage;
-import net.sourceforge.vietocr.OCR;
-import net.sourceforge.vietocr.OCRFiles;
+import net.sourceforge.vietocr.OCRImages;
 
 /**
  * Extends <code>TrainerController</code> with validation functionality.
@@ -47,6 +46,7 @@ public class TrainerValidatorController extends TrainerController {
 
     private ResourceBundle bundle;
     private FileChooser fc;
+    private DirectoryChooser dc;
     private String language;
     private Stage stageResult;
     private OcrWorker ocrWorker;
@@ -65,6 +65,9 @@ public class TrainerValidatorController extends TrainerController {
         ExtensionFilter allImageFilter = new ExtensionFilter(bundle.getString("All_Image_Files"), "*.bmp", "*.jpg", "*.jpeg", "*.png", "*.tif", "*.tiff");
         fc.getExtensionFilters().add(allImageFilter);
         fc.setInitialDirectory(new File(trainDataDirectory));
+        dc = new DirectoryChooser();
+        dc.setTitle("Select Directory of Images and Box Files");
+        dc.setInitialDirectory(new File(trainDataDirectory));
 
         TextArea taValidationResult = new TextArea();
         taValidationResult.setId("textbox");
@@ -97,16 +100,33 @@ public class TrainerValidatorController extends TrainerController {
 
         btnValidate.setDisable(true);
 
-        // perform OCR on the training image
-        File imageFile = fc.showOpenDialog(progressBar1.getScene().getWindow());
-        if (imageFile != null) {
-            fc.setInitialDirectory(imageFile.getParentFile());
+        // perform OCR on selected training images, or on all of a directory
+        ButtonType btnFiles = new ButtonType("Image Files...");
+        ButtonType btnDirectory = new ButtonType("Directory...");
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "Validate selected image files, or all images with box files in a directory?", btnFiles, btnDirectory, ButtonType.CANCEL);
+        alert.setHeaderText(null);
+        ButtonType choice = alert.showAndWait().orElse(ButtonType.CANCEL);
+
+        List<File> files = null;
+        if (choice == btnFiles) {
+            files = fc.showOpenMultipleDialog(progressBar1.getScene().getWindow());
+        } else if (choice == btnDirectory) {
+            File dir = dc.showDialog(progressBar1.getScene().getWindow());
+            if (dir != null) {
+                files = AccuracyEvaluator.listImageFiles(dir);
+                if (files.isEmpty()) {
+                    new Alert(Alert.AlertType.NONE, "There are no images with box files in " + dir.getPath() + ".", ButtonType.OK).showAndWait();
+                }
+            }
+        }
+
+        if (files != null && !files.isEmpty()) {
+            fc.setInitialDirectory(files.get(0).getParentFile());
+            dc.setInitialDirectory(files.get(0).getParentFile());
             progressBar1.setVisible(true);
             progressBar1.setProgress(0);
             labelStatus.getScene().setCursor(Cursor.WAIT);
             taOutput.setCursor(Cursor.WAIT);
-            List<File> files = new ArrayList<File>();
-            files.add(imageFile);
 
             // instantiate Task for OCR
             ocrWorker = new OcrWorker(files);
@@ -122,9 +142,11 @@ public class TrainerValidatorController extends TrainerController {
     class OcrWorker extends Task<String> {
 
         List<File> files;
+        int nThreads;
 
         public OcrWorker(List<File> files) {
             this.files = files;
+            this.nThreads = getConcurrency();
             progressBar1.progressProperty().unbind();
             progressBar1.progressProperty().bind(this.progressProperty());
             labelStatus.textProperty().unbind();
@@ -134,18 +156,18 @@ public class TrainerValidatorController extends TrainerController {
         @Override
         protected String call() throws Exception {
             updateMessage(bundle.getString("OCR_running..."));
-            OCR<File> ocrEngine = new OCRFiles(tessDirectory);
-            ocrEngine.setDatapath(trainDataDirectory + "/tessdata");
-            ocrEngine.setLanguage(language);
-            String result = "";
-            for (int i = 0; i < files.size(); i++) {
-                if (!isCancelled()) {
-                    result = ocrEngine.recognizeText(files.subList(i, i + 1));
-                    updateValue(result);
+            try (OCRImages ocrEngine = new OCRImages(nThreads)) {
+                ocrEngine.setDatapath(trainDataDirectory + "/tessdata");
+                ocrEngine.setLanguage(language);
+
+                // score pages against their box files, if any
+                AccuracyEvaluator evaluator = new AccuracyEvaluator();
+                String text = evaluator.evaluate(files, ocrEngine, (done, total) -> updateProgress(done, total));
+                if (evaluator.getPageScores().isEmpty()) {
+                    return text;
                 }
+                return evaluator.getReport() + "\n** OCR Text **\n" + text;
             }
-
-            return result;
         }
 
         @Override
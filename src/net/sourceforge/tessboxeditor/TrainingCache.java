@@ -0,0 +1,176 @@
+/**
+ * Copyright @ 2016 Quan Nguyen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package net.sourceforge.tessboxeditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Build-cache manifest for training steps. Records content hashes of the
+ * inputs and outputs of each step, so a step can be skipped on rerun when
+ * neither its inputs nor its outputs have changed since it last succeeded.
+ * Deleting the manifest file forces a full rebuild.
+ */
+public class TrainingCache {
+
+    private static final String MISSING = "missing";
+
+    private final File manifest;
+    private final Properties entries = new Properties();
+    private final Map<File, String> fileHashes = new HashMap<File, String>();
+
+    private final static Logger logger = Logger.getLogger(TrainingCache.class.getName());
+
+    /**
+     * Loads the manifest, if any.
+     *
+     * @param manifest manifest file
+     */
+    public TrainingCache(File manifest) {
+        this.manifest = manifest;
+        if (manifest.exists()) {
+            try (InputStream in = Files.newInputStream(manifest.toPath())) {
+                entries.load(in);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, e.getMessage(), e); // start afresh
+            }
+        }
+    }
+
+    /**
+     * Whether a step's inputs and outputs are as recorded when it last ran.
+     *
+     * @param step step key, e.g. its command line
+     * @param inputs files the step reads
+     * @param outputs files the step writes
+     * @return true if the step can be skipped
+     * @throws IOException
+     */
+    public synchronized boolean isUpToDate(String step, List<File> inputs, List<File> outputs) throws IOException {
+        String recorded = entries.getProperty(step);
+        if (recorded == null) {
+            return false;
+        }
+        for (File output : outputs) {
+            if (!output.exists()) {
+                return false;
+            }
+        }
+        return recorded.equals(digest(inputs) + " " + digest(outputs));
+    }
+
+    /**
+     * Records a step that has just run successfully, and saves the manifest.
+     *
+     * @param step step key
+     * @param inputs files the step read
+     * @param outputs files the step wrote
+     * @throws IOException
+     */
+    public synchronized void record(String step, List<File> inputs, List<File> outputs) throws IOException {
+        for (File output : outputs) {
+            fileHashes.remove(output); // rewritten by the step
+        }
+        entries.setProperty(step, digest(inputs) + " " + digest(outputs));
+        try (OutputStream out = Files.newOutputStream(manifest.toPath())) {
+            entries.store(out, "Training build cache");
+        }
+    }
+
+    /**
+     * Computes a combined hash of the names and contents of files,
+     * independent of their order.
+     */
+    private String digest(List<File> files) throws IOException {
+        File[] sorted = files.toArray(new File[files.size()]);
+        Arrays.sort(sorted);
+        MessageDigest md = newDigest();
+        for (File file : sorted) {
+            md.update(file.getName().getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update(hash(file).getBytes(StandardCharsets.US_ASCII));
+            md.update((byte) '\n');
+        }
+        return toHex(md.digest());
+    }
+
+    /**
+     * Gets content hash of a file, computing it at most once per run.
+     */
+    private String hash(File file) throws IOException {
+        String hash = fileHashes.get(file);
+        if (hash == null) {
+            if (!file.exists()) {
+                return MISSING;
+            }
+            MessageDigest md = newDigest();
+            byte[] buf = new byte[64 * 1024];
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    md.update(buf, 0, n);
+                }
+            }
+            hash = toHex(md.digest());
+            fileHashes.put(file, hash);
+        }
+        return hash;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // required of every Java platform
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Convenience for building file lists.
+     *
+     * @param dir directory
+     * @param names file names
+     * @return files
+     */
+    static List<File> files(String dir, String... names) {
+        File[] files = new File[names.length];
+        for (int i = 0; i < names.length; i++) {
+            files[i] = new File(dir, names[i]);
+        }
+        return Arrays.asList(files);
+    }
+}
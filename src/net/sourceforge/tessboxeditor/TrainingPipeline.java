@@ -0,0 +1,291 @@
+/**
+ * Copyright @ 2016 Quan Nguyen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package net.sourceforge.tessboxeditor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Training pipeline modeled as a dependency graph of steps. Each step declares
+ * the files it reads and writes; a step depends on every previously added step
+ * that writes one of its inputs. Steps whose dependencies have completed run
+ * concurrently. Cacheable steps are skipped when their inputs and outputs are
+ * unchanged since they last ran.
+ */
+public class TrainingPipeline {
+
+    /**
+     * Kinds of training steps.
+     */
+    public enum StepType {
+
+        MAKE_BOX, TRAIN, UNICHARSET, CLUSTERING, DICTIONARY, COMBINE
+    }
+
+    /**
+     * Work performed by a step.
+     */
+    public interface Action {
+
+        void run() throws Exception;
+    }
+
+    /**
+     * A node in the training graph.
+     */
+    public static class Step {
+
+        private final String name;
+        private final String cacheKey;
+        private final StepType type;
+        private final List<File> inputs;
+        private final List<File> outputs;
+        private final Action action;
+        private final List<Step> dependencies = new ArrayList<Step>();
+        private final List<Step> dependents = new ArrayList<Step>();
+        private volatile long duration; // nanoseconds
+        private volatile boolean skipped;
+
+        Step(String name, String cacheKey, StepType type, List<File> inputs, List<File> outputs, Action action) {
+            this.name = name;
+            this.cacheKey = cacheKey;
+            this.type = type;
+            this.inputs = inputs;
+            this.outputs = outputs;
+            this.action = action;
+        }
+
+        /**
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the type
+         */
+        public StepType getType() {
+            return type;
+        }
+
+        /**
+         * @return the steps this step depends on
+         */
+        public List<Step> getDependencies() {
+            return Collections.unmodifiableList(dependencies);
+        }
+    }
+
+    private final List<Step> steps = new ArrayList<Step>();
+    private final Map<File, Step> producers = new HashMap<File, Step>();
+    private final TrainingCache cache;
+    private final int concurrency;
+    private final Consumer<String> log;
+    private long elapsed; // nanoseconds
+
+    /**
+     * Creates an empty pipeline.
+     *
+     * @param cache build cache; may be null
+     * @param concurrency maximum number of steps running at once
+     * @param log receiver of progress messages
+     */
+    public TrainingPipeline(TrainingCache cache, int concurrency, Consumer<String> log) {
+        this.cache = cache;
+        this.concurrency = Math.max(1, concurrency);
+        this.log = log;
+    }
+
+    /**
+     * Adds a step.
+     *
+     * @param name step name
+     * @param cacheKey key of the step in the build cache, i.e., its full
+     * command lines, so that a change of tools reruns it; null if the step is
+     * never to be skipped
+     * @param type step type
+     * @param inputs files the step reads
+     * @param outputs files the step writes
+     * @param action work to perform
+     * @return the step
+     */
+    public Step addStep(String name, String cacheKey, StepType type, List<File> inputs, List<File> outputs, Action action) {
+        Step step = new Step(name, cacheKey, type, inputs, outputs, action);
+        Set<Step> dependencies = new HashSet<Step>();
+        for (File input : inputs) {
+            Step producer = producers.get(input);
+            if (producer != null && dependencies.add(producer)) {
+                step.dependencies.add(producer);
+                producer.dependents.add(step);
+            }
+        }
+        for (File output : outputs) {
+            producers.put(output, step);
+        }
+        steps.add(step);
+        return step;
+    }
+
+    /**
+     * Gets the steps that have no dependencies, where execution starts.
+     *
+     * @return start nodes
+     */
+    public List<Step> getStartNodes() {
+        List<Step> startNodes = new ArrayList<Step>();
+        for (Step step : steps) {
+            if (step.dependencies.isEmpty()) {
+                startNodes.add(step);
+            }
+        }
+        return startNodes;
+    }
+
+    /**
+     * Runs all steps, each as soon as its dependencies have completed. On the
+     * first failure, or if the calling thread is interrupted, running steps
+     * are interrupted and no further steps are started.
+     *
+     * @throws Exception the failure of a step
+     */
+    public void run() throws Exception {
+        long startTime = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        CompletionService<Step> completionService = new ExecutorCompletionService<Step>(executor);
+        Map<Step, Integer> pending = new HashMap<Step, Integer>();
+        for (Step step : steps) {
+            pending.put(step, step.dependencies.size());
+        }
+
+        try {
+            int running = 0;
+            for (Step step : getStartNodes()) {
+                completionService.submit(() -> execute(step));
+                running++;
+            }
+
+            while (running > 0) {
+                Future<Step> future = completionService.take();
+                running--;
+                Step done;
+                try {
+                    done = future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Exception) {
+                        throw (Exception) cause;
+                    }
+                    throw e;
+                }
+
+                for (Step dependent : done.dependents) {
+                    int remaining = pending.get(dependent) - 1;
+                    pending.put(dependent, remaining);
+                    if (remaining == 0) {
+                        completionService.submit(() -> execute(dependent));
+                        running++;
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            elapsed = System.nanoTime() - startTime;
+        }
+    }
+
+    /**
+     * Runs a step unless it is up to date.
+     */
+    private Step execute(Step step) throws Exception {
+        long startTime = System.nanoTime();
+        try {
+            if (step.cacheKey != null && cache != null && cache.isUpToDate(step.cacheKey, step.inputs, step.outputs)) {
+                step.skipped = true;
+                log.accept(String.format("%s is up to date.", step.name));
+                return step;
+            }
+            step.action.run();
+            if (step.cacheKey != null && cache != null) {
+                cache.record(step.cacheKey, step.inputs, step.outputs);
+            }
+            return step;
+        } finally {
+            step.duration = System.nanoTime() - startTime;
+        }
+    }
+
+    /**
+     * Gets a timing report: the duration of each step, and the critical path,
+     * i.e., the chain of dependent steps that took longest overall.
+     *
+     * @return report
+     */
+    public String getReport() {
+        // steps are in topological order, as dependencies are added first
+        Map<Step, Long> finish = new HashMap<Step, Long>();
+        Map<Step, Step> previous = new HashMap<Step, Step>();
+        Step last = null;
+        for (Step step : steps) {
+            Step slowest = null;
+            for (Step dependency : step.dependencies) {
+                if (slowest == null || finish.get(dependency) > finish.get(slowest)) {
+                    slowest = dependency;
+                }
+            }
+            finish.put(step, step.duration + (slowest != null ? finish.get(slowest) : 0));
+            previous.put(step, slowest);
+            if (last == null || finish.get(step) > finish.get(last)) {
+                last = step;
+            }
+        }
+
+        StringBuilder sb = new StringBuilder("** Step Timings **\n");
+        for (Step step : steps) {
+            sb.append(String.format("%-12s %-40s %s%s%n", step.type, step.name, formatTime(step.duration), step.skipped ? " (up to date)" : ""));
+        }
+
+        List<Step> path = new ArrayList<Step>();
+        for (Step step = last; step != null; step = previous.get(step)) {
+            path.add(step);
+        }
+        Collections.reverse(path);
+        sb.append("Critical path:");
+        for (int i = 0; i < path.size(); i++) {
+            sb.append(i == 0 ? " " : " > ").append(path.get(i).name);
+        }
+        sb.append(String.format(" (%s)%nElapsed: %s", formatTime(last != null ? finish.get(last) : 0), formatTime(elapsed)));
+        return sb.toString();
+    }
+
+    private static String formatTime(long nanos) {
+        return String.format("%.1fs", TimeUnit.NANOSECONDS.toMillis(nanos) / 1000.0);
+    }
+}
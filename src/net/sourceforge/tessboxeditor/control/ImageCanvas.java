@@ -15,25 +15,62 @@
  */
 package net.sourceforge.tessboxeditor.control;
 
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javafx.beans.InvalidationListener;
+import javafx.geometry.Bounds;
 import javafx.geometry.Point2D;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollPane;
 import javafx.scene.control.TableView;
 import javafx.scene.control.Tooltip;
-import javafx.scene.image.Image;
+import javafx.scene.Group;
+import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import net.sourceforge.tessboxeditor.datamodel.*;
+import net.sourceforge.tessboxeditor.utilities.ImageUtils;
 import net.sourceforge.vietocr.util.Utils;
 
-public class ImageCanvas extends Canvas {
+/**
+ * Page image with box overlay. The image and the boxes are on separate layers
+ * so that box edits never redraw the bitmap; boxes are painted only within the
+ * visible part of the enclosing scroll pane, and only the affected regions are
+ * repainted when boxes move or change selection.
+ * <p>
+ * The image is split into fixed-size tiles that are created as they scroll
+ * into view and evicted least recently used first, and the box layer covers
+ * only the viewport, so memory and texture sizes stay bounded regardless of
+ * the image size.
+ */
+public class ImageCanvas extends Pane {
+
+    /**
+     * Extra space around a box covered by its stroke.
+     */
+    private static final double STROKE_MARGIN = 2;
+    private static final int TILE_SIZE = 512;
+    private static final int MIN_CACHED_TILES = 16;
 
+    private final Group imageLayer = new Group();
+    private final Map<Long, ImageView> tiles = new LinkedHashMap<Long, ImageView>(32, 0.75f, true);
+    private final Canvas boxLayer = new Canvas();
     private TessBoxCollection boxes;
     private TableView tableView;
+    private ScrollPane scrollPane;
     private boolean boxClickAction;
-    private Image image;
+    private BufferedImage image;
+    private final Map<TessBox, Rectangle2D> paintedSelection = new IdentityHashMap<TessBox, Rectangle2D>();
+    private final InvalidationListener viewportListener = observable -> paint();
     private Font font = Font.font(24);
     Tooltip tooltip;
     TessBox prevBox;
@@ -43,6 +80,9 @@ public class ImageCanvas extends Canvas {
      * Creates a new instance of ImageCanvas
      */
     public ImageCanvas() {
+        imageLayer.setManaged(false);
+        boxLayer.setManaged(false);
+        getChildren().addAll(imageLayer, boxLayer);
         tooltip = new Tooltip();
 
         this.setOnMousePressed((MouseEvent me) -> {
@@ -66,21 +106,19 @@ public class ImageCanvas extends Canvas {
                 //paint();
                 // select corresponding table rows
                 boxClickAction = true;
-                java.util.List<TessBox> boxesOfCurPage = boxes.toList(); // boxes of current page
-                
                 if (!box.isSelected()) {
-                    int index = boxesOfCurPage.indexOf(box);
+                    int index = boxes.indexOf(box);
                     tableView.getSelectionModel().clearSelection(index);
                 }
                 for (TessBox selectedBox : boxes.getSelectedBoxes()) {
-                    int index = boxesOfCurPage.indexOf(selectedBox);
+                    int index = boxes.indexOf(selectedBox);
                     tableView.getSelectionModel().select(index);
                     tableView.scrollTo(index > 10 ? index - 4 : index); // fix issue with selected row pegged at the top
                 }
                 boxClickAction = false;
             }
 
-            paint();
+            repaintSelection();
         });
 
         this.setOnMouseMoved((MouseEvent me) -> {
@@ -118,43 +156,195 @@ public class ImageCanvas extends Canvas {
         });
     }
 
+    /**
+     * Brings the visible image tiles up to date and repaints all boxes in the
+     * viewport.
+     */
     public void paint() {
-        final GraphicsContext gc = getGraphicsContext2D();
+        paintedSelection.clear();
 
         if (image == null) {
+            boxLayer.getGraphicsContext2D().clearRect(0, 0, boxLayer.getWidth(), boxLayer.getHeight());
             return;
         }
 
-        gc.clearRect(0, 0, getWidth(), getHeight());
-        gc.drawImage(image, 0, 0);
-        
-        if (boxes == null) {
+        Rectangle2D viewport = getViewport();
+        updateTiles(viewport);
+
+        // box layer spans the viewport only
+        boxLayer.relocate(viewport.getMinX(), viewport.getMinY());
+        boxLayer.setWidth(viewport.getWidth());
+        boxLayer.setHeight(viewport.getHeight());
+        boxLayer.getGraphicsContext2D().clearRect(0, 0, viewport.getWidth(), viewport.getHeight());
+
+        repaint(viewport);
+    }
+
+    /**
+     * Repaints boxes within the given regions of the page, clipped to the
+     * viewport.
+     *
+     * @param regions dirty regions, in image coordinates
+     */
+    public void repaint(Rectangle2D... regions) {
+        if (image == null) {
             return;
         }
 
-        gc.setStroke(Color.BLUE);
-        boolean resetColor = false;
+        // area covered by the box layer, as of the last paint
+        Rectangle2D viewport = new Rectangle2D(boxLayer.getLayoutX(), boxLayer.getLayoutY(), boxLayer.getWidth(), boxLayer.getHeight());
+        GraphicsContext gc = boxLayer.getGraphicsContext2D();
 
-        for (TessBox box : boxes.toList()) {
-            if (box.isSelected()) {
-                gc.setLineWidth(2);
-                gc.setStroke(Color.RED);
-                resetColor = true;
+        for (Rectangle2D region : regions) {
+            Rectangle2D dirty = intersect(inflate(region, STROKE_MARGIN), viewport);
+            if (dirty == null) {
+                continue;
             }
-            Rectangle2D rect = box.getRect();
-            gc.strokeRect(rect.getMinX(), rect.getMinY(), rect.getWidth(), rect.getHeight());
-            if (resetColor) {
+
+            gc.save();
+            gc.translate(-boxLayer.getLayoutX(), -boxLayer.getLayoutY()); // image coordinates
+            gc.beginPath();
+            gc.rect(dirty.getMinX(), dirty.getMinY(), dirty.getWidth(), dirty.getHeight());
+            gc.clip();
+            gc.clearRect(dirty.getMinX(), dirty.getMinY(), dirty.getWidth(), dirty.getHeight());
+
+            if (boxes != null) {
+                // boxes whose stroke reaches into the dirty region
+                List<TessBox> selected = new ArrayList<TessBox>();
                 gc.setLineWidth(1);
                 gc.setStroke(Color.BLUE);
-                resetColor = false;
+                for (TessBox box : boxes.getBoxesIn(inflate(dirty, STROKE_MARGIN))) {
+                    if (box.isSelected()) {
+                        selected.add(box); // draw on top
+                    } else {
+                        strokeBox(gc, box.getRect());
+                    }
+                }
+                gc.setLineWidth(2);
+                gc.setStroke(Color.RED);
+                for (TessBox box : selected) {
+                    strokeBox(gc, box.getRect());
+                    paintedSelection.put(box, box.getRect());
+                }
+            }
+            gc.restore();
+        }
+    }
+
+    /**
+     * Repaints only the boxes whose selection state or bounds have changed
+     * since they were last painted as selected, as well as the newly selected
+     * ones.
+     */
+    public void repaintSelection() {
+        if (boxes == null) {
+            paint();
+            return;
+        }
+
+        List<Rectangle2D> dirty = new ArrayList<Rectangle2D>();
+        for (Iterator<Map.Entry<TessBox, Rectangle2D>> it = paintedSelection.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<TessBox, Rectangle2D> entry = it.next();
+            TessBox box = entry.getKey();
+            if (!box.isSelected() || !box.getRect().equals(entry.getValue())) {
+                dirty.add(entry.getValue());
+                it.remove(); // repainted below if still selected
+            }
+        }
+        for (TessBox box : boxes.getSelectedBoxes()) {
+            if (!box.getRect().equals(paintedSelection.get(box))) {
+                dirty.add(box.getRect());
+            }
+        }
+
+        repaint(dirty.toArray(new Rectangle2D[dirty.size()]));
+    }
+
+    /**
+     * Gets the visible part of the page.
+     *
+     * @return viewport in image coordinates
+     */
+    public Rectangle2D getViewport() {
+        double width = image == null ? 0 : image.getWidth();
+        double height = image == null ? 0 : image.getHeight();
+        if (scrollPane == null) {
+            return new Rectangle2D(0, 0, width, height);
+        }
+        Bounds bounds = scrollPane.getViewportBounds();
+        double x = Math.max(0, (width - bounds.getWidth()) * scrollPane.getHvalue());
+        double y = Math.max(0, (height - bounds.getHeight()) * scrollPane.getVvalue());
+        return new Rectangle2D(x, y, Math.min(bounds.getWidth(), width), Math.min(bounds.getHeight(), height));
+    }
+
+    /**
+     * Creates the tiles covering the viewport that are not cached yet and
+     * evicts the least recently used ones that are out of view.
+     */
+    private void updateTiles(Rectangle2D viewport) {
+        int col1 = (int) (viewport.getMinX() / TILE_SIZE);
+        int row1 = (int) (viewport.getMinY() / TILE_SIZE);
+        int col2 = (int) Math.min((image.getWidth() - 1) / TILE_SIZE, Math.max(col1, Math.ceil(viewport.getMaxX() / TILE_SIZE) - 1));
+        int row2 = (int) Math.min((image.getHeight() - 1) / TILE_SIZE, Math.max(row1, Math.ceil(viewport.getMaxY() / TILE_SIZE) - 1));
+
+        for (int row = row1; row <= row2; row++) {
+            for (int col = col1; col <= col2; col++) {
+                Long key = ((long) row << 32) | col;
+                if (tiles.get(key) != null) {
+                    continue; // touched as most recently used
+                }
+                int x = col * TILE_SIZE;
+                int y = row * TILE_SIZE;
+                int w = Math.min(TILE_SIZE, image.getWidth() - x);
+                int h = Math.min(TILE_SIZE, image.getHeight() - y);
+                ImageView tile = new ImageView(ImageUtils.toFXImage(image, x, y, w, h));
+                tile.relocate(x, y);
+                tiles.put(key, tile);
+                imageLayer.getChildren().add(tile);
             }
         }
+
+        int visible = (row2 - row1 + 1) * (col2 - col1 + 1);
+        int maxTiles = Math.max(MIN_CACHED_TILES, visible * 2);
+        Iterator<ImageView> it = tiles.values().iterator();
+        while (tiles.size() > maxTiles && it.hasNext()) {
+            imageLayer.getChildren().remove(it.next());
+            it.remove();
+        }
+    }
+
+    private static void strokeBox(GraphicsContext gc, Rectangle2D rect) {
+        gc.strokeRect(rect.getMinX(), rect.getMinY(), rect.getWidth(), rect.getHeight());
+    }
+
+    private static Rectangle2D inflate(Rectangle2D rect, double margin) {
+        return new Rectangle2D(rect.getMinX() - margin, rect.getMinY() - margin, rect.getWidth() + 2 * margin, rect.getHeight() + 2 * margin);
+    }
+
+    private static Rectangle2D intersect(Rectangle2D r1, Rectangle2D r2) {
+        double minX = Math.max(r1.getMinX(), r2.getMinX());
+        double minY = Math.max(r1.getMinY(), r2.getMinY());
+        double maxX = Math.min(r1.getMaxX(), r2.getMaxX());
+        double maxY = Math.min(r1.getMaxY(), r2.getMaxY());
+        if (maxX <= minX || maxY <= minY) {
+            return null;
+        }
+        return new Rectangle2D(minX, minY, maxX - minX, maxY - minY);
     }
 
-    public void setImage(Image image) {
+    /**
+     * Sets the page image. Tiles are created on demand when painted.
+     *
+     * @param image
+     */
+    public void setImage(BufferedImage image) {
         this.image = image;
-        this.setWidth(image.getWidth());
-        this.setHeight(image.getHeight());
+        tiles.clear();
+        imageLayer.getChildren().clear();
+        setPrefSize(image.getWidth(), image.getHeight());
+        setMinSize(image.getWidth(), image.getHeight());
+        setMaxSize(image.getWidth(), image.getHeight());
+        paintedSelection.clear();
     }
 
     public void setBoxes(TessBoxCollection boxes) {
@@ -173,6 +363,25 @@ public class ImageCanvas extends Canvas {
         this.tableView = table;
     }
 
+    /**
+     * Sets the scroll pane whose viewport limits box painting.
+     *
+     * @param scrollPane the enclosing scroll pane
+     */
+    public void setScrollPane(ScrollPane scrollPane) {
+        if (this.scrollPane != null) {
+            this.scrollPane.hvalueProperty().removeListener(viewportListener);
+            this.scrollPane.vvalueProperty().removeListener(viewportListener);
+            this.scrollPane.viewportBoundsProperty().removeListener(viewportListener);
+        }
+        this.scrollPane = scrollPane;
+        if (scrollPane != null) {
+            scrollPane.hvalueProperty().addListener(viewportListener);
+            scrollPane.vvalueProperty().addListener(viewportListener);
+            scrollPane.viewportBoundsProperty().addListener(viewportListener);
+        }
+    }
+
     /**
      * @return the boxClickAction
      */
@@ -0,0 +1,423 @@
+/**
+ * Copyright @ 2016 Quan Nguyen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sourceforge.tessboxeditor.datamodel;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import javafx.geometry.Rectangle2D;
+
+/**
+ * Streaming box file parser. Scans the UTF-8 bytes of a box file in place,
+ * without splitting it into lines or fields, and emits boxes page by page.
+ * Supports Tess 2.0x, Tess 3.0x and WordStr box formats.
+ */
+public class BoxFileReader implements Closeable {
+
+    public static final String WORDSTR = "WordStr";
+    private static final byte[] WORDSTR_BYTES = WORDSTR.getBytes(StandardCharsets.US_ASCII);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int NEED_MORE = -1;
+
+    private final InputStream in;
+    private byte[] buf = new byte[BUFFER_SIZE];
+    private long base; // offset in data of buffer start
+    private int pos; // start of unread data in buffer
+    private int limit; // end of valid data in buffer
+    private boolean eof;
+
+    // current line
+    private int lineStart, lineEnd;
+    private boolean firstLine = true;
+    private byte[] eol; // terminator of the first line
+    private boolean wellFormed = true;
+
+    // tokens of current line; only the first 7 are needed
+    private final int[] tokStart = new int[7];
+    private final int[] tokEnd = new int[7];
+
+    // fields of the last parsed box
+    private String chrs;
+    private int x1, y1, x2, y2;
+    private short page;
+    private boolean pending; // box parsed but belongs to a later page
+    private long boxOffset; // offset in data of the line of the last parsed box
+    private long pageEnd; // offset in data where the last read page ends
+
+    private int curPage;
+    private boolean isTess2_0Format;
+    private boolean isWordStrFormat;
+
+    /**
+     * Creates a reader for a box file.
+     *
+     * @param boxFile
+     * @throws IOException
+     */
+    public BoxFileReader(File boxFile) throws IOException {
+        this(Files.newInputStream(boxFile.toPath()));
+    }
+
+    /**
+     * Creates a reader for UTF-8 encoded box data.
+     *
+     * @param in
+     */
+    public BoxFileReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads boxes of the next page. Note that the coordinate system used in
+     * the box file has (0,0) at the bottom-left; on computer graphics device,
+     * (0,0) is defined as top-left.
+     *
+     * @param pageHeight height of the page image, for flipping y-coordinates
+     * @return boxes of the page
+     * @throws IOException
+     * @throws NumberFormatException if a coordinate cannot be parsed
+     */
+    public TessBoxCollection readPage(int pageHeight) throws IOException {
+        TessBoxCollection boxCol = new TessBoxCollection();
+        while (pending || readBox()) {
+            if (page > curPage) {
+                pending = true; // mark begin of next page
+                break;
+            }
+            pending = false;
+            int w = x2 - x1;
+            int h = y2 - y1;
+            int y = pageHeight - y1 - h; // flip the y-coordinate
+            boxCol.add(new TessBox(chrs, new Rectangle2D(x1, y, w, h), page));
+        }
+        pageEnd = pending ? boxOffset : base + pos;
+        curPage++;
+        boxCol.setModified(false);
+        return boxCol;
+    }
+
+    /**
+     * Gets the byte offset in the data where the page last read ends and the
+     * next page begins. Consecutive pages occupy contiguous byte ranges.
+     *
+     * @return byte offset
+     */
+    public long getOffset() {
+        return pageEnd;
+    }
+
+    /**
+     * Whether the box data is in Tess 2.0x format, i.e., with only 5 fields.
+     * Valid after the first page has been read.
+     *
+     * @return
+     */
+    public boolean isTess2_0Format() {
+        return isTess2_0Format;
+    }
+
+    /**
+     * Whether the box data is in WordStr format. Valid after all pages have
+     * been read.
+     *
+     * @return
+     */
+    public boolean isWordStrFormat() {
+        return isWordStrFormat;
+    }
+
+    /**
+     * Gets the line terminator of the box data, as that of its first line.
+     *
+     * @return line terminator, or null if no terminated line has been read
+     */
+    public String getLineSeparator() {
+        return eol != null ? new String(eol, StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Whether all lines read so far are valid box lines ending in the same
+     * terminator, i.e., whether the data are as they would be written out
+     * again, so that pages can be copied verbatim.
+     *
+     * @return
+     */
+    public boolean isWellFormed() {
+        return wellFormed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Parses the next valid box line into the current box fields.
+     *
+     * @return false if end of data
+     */
+    private boolean readBox() throws IOException {
+        while (nextLine()) {
+            int s = lineStart;
+            int e = lineEnd;
+            boxOffset = base + s;
+
+            if (firstLine) {
+                firstLine = false;
+                // if only 5 fields, it's Tess 2.0x format
+                isTess2_0Format = decode(s, e).split("\\s+").length == 5;
+            }
+
+            if (s == e) {
+                wellFormed = false;
+                continue; // empty line
+            }
+
+            // Tokenize on runs of spaces; the first token may itself be a space
+            int n = 1;
+            int i = s + 1;
+            while (i < e && buf[i] != ' ') {
+                i++;
+            }
+            tokStart[0] = s;
+            tokEnd[0] = i;
+            while (i < e) {
+                while (i < e && buf[i] == ' ') {
+                    i++;
+                }
+                if (i >= e) {
+                    break;
+                }
+                int start = i;
+                while (i < e && buf[i] != ' ') {
+                    i++;
+                }
+                if (n < tokStart.length) {
+                    tokStart[n] = start;
+                    tokEnd[n] = i;
+                }
+                n++;
+            }
+
+            boolean wordStr = isWordStr();
+
+            // skip invalid data
+            if (n < 5 || (n > 6 && !wordStr)) {
+                wellFormed = false;
+                continue;
+            }
+
+            x1 = parseInt(1);
+            y1 = parseInt(2);
+            x2 = parseInt(3);
+            y2 = parseInt(4);
+
+            if (n == 6 || (wordStr && n >= 7)) {
+                page = parseShort(5); // Tess 3.0x format
+            } else {
+                page = 0; // Tess 2.0x format
+            }
+
+            if (wordStr && n >= 7 && buf[tokStart[6]] == '#') {
+                int hash = s;
+                while (buf[hash] != '#') {
+                    hash++;
+                }
+                chrs = decode(hash + 1, e);
+                isWordStrFormat = true;
+            } else {
+                chrs = decode(tokStart[0], tokEnd[0]);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isWordStr() {
+        if (tokEnd[0] - tokStart[0] != WORDSTR_BYTES.length) {
+            return false;
+        }
+        for (int i = 0; i < WORDSTR_BYTES.length; i++) {
+            if (buf[tokStart[0] + i] != WORDSTR_BYTES[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses an integer token in place; falls back to
+     * <code>Integer.parseInt</code> for anything but plain ASCII digits.
+     */
+    private int parseInt(int token) {
+        int i = tokStart[token];
+        int end = tokEnd[token];
+        boolean negative = false;
+        if (buf[i] == '-' || buf[i] == '+') {
+            negative = buf[i] == '-';
+            i++;
+        }
+        if (i == end || end - i > 9) {
+            return Integer.parseInt(decode(tokStart[token], end));
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.parseInt(decode(tokStart[token], end));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private short parseShort(int token) {
+        int value = parseInt(token);
+        if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+            return Short.parseShort(decode(tokStart[token], tokEnd[token]));
+        }
+        return (short) value;
+    }
+
+    private String decode(int start, int end) {
+        return new String(buf, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Advances to the next line. Line terminators are those matched by the
+     * regex <code>\R</code>.
+     *
+     * @return false if end of data
+     */
+    private boolean nextLine() throws IOException {
+        if (pos >= limit && !fill()) {
+            return false;
+        }
+        int i = pos;
+        while (true) {
+            if (i >= limit) {
+                int consumed = pos;
+                if (!fill()) {
+                    // last line without terminator
+                    lineStart = pos;
+                    lineEnd = limit;
+                    pos = limit;
+                    return true;
+                }
+                i -= consumed;
+            }
+            int len = terminatorLength(i);
+            if (len == NEED_MORE) {
+                int consumed = pos;
+                fill();
+                i -= consumed;
+                continue;
+            }
+            if (len > 0) {
+                checkTerminator(i, len);
+                lineStart = pos;
+                lineEnd = i;
+                pos = i + len;
+                return true;
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Records the terminator of the first line; any other one makes the data
+     * not well-formed.
+     */
+    private void checkTerminator(int i, int len) {
+        if (eol == null) {
+            eol = Arrays.copyOfRange(buf, i, i + len);
+        } else if (wellFormed) {
+            if (len != eol.length) {
+                wellFormed = false;
+                return;
+            }
+            for (int k = 0; k < len; k++) {
+                if (buf[i + k] != eol[k]) {
+                    wellFormed = false;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets length of line terminator at index, 0 if none, or
+     * <code>NEED_MORE</code> if more data need be read to decide.
+     */
+    private int terminatorLength(int i) {
+        switch (buf[i]) {
+            case '\n':
+            case 0x0B:
+            case '\f':
+                return 1;
+            case '\r':
+                if (i + 1 < limit) {
+                    return buf[i + 1] == '\n' ? 2 : 1;
+                }
+                return eof ? 1 : NEED_MORE;
+            case (byte) 0xC2: // U+0085
+                if (i + 1 < limit) {
+                    return buf[i + 1] == (byte) 0x85 ? 2 : 0;
+                }
+                return eof ? 0 : NEED_MORE;
+            case (byte) 0xE2: // U+2028, U+2029
+                if (i + 2 < limit) {
+                    return buf[i + 1] == (byte) 0x80 && (buf[i + 2] == (byte) 0xA8 || buf[i + 2] == (byte) 0xA9) ? 3 : 0;
+                }
+                return eof ? 0 : NEED_MORE;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Compacts unread data to the start of the buffer and reads more.
+     *
+     * @return false if no more data could be read
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            base += pos;
+            pos = 0;
+        }
+        if (limit == buf.length) {
+            byte[] newBuf = new byte[buf.length * 2];
+            System.arraycopy(buf, 0, newBuf, 0, limit);
+            buf = newBuf;
+        }
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+}
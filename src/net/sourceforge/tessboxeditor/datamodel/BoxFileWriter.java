@@ -0,0 +1,314 @@
+/**
+ * Copyright @ 2016 Quan Nguyen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sourceforge.tessboxeditor.datamodel;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import javafx.geometry.Rectangle2D;
+
+/**
+ * Streaming box file writer. Formats boxes directly into a reusable byte
+ * buffer, which is written to the channel page by page, so the file content is
+ * never held in memory as a whole. Supports Tess 2.0x, Tess 3.0x and WordStr
+ * box formats.
+ */
+public class BoxFileWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] WORDSTR_BYTES = BoxFileReader.WORDSTR.getBytes(StandardCharsets.US_ASCII);
+
+    private final WritableByteChannel channel;
+    private byte[] buf = new byte[BUFFER_SIZE];
+    private int count;
+    private long flushed; // bytes written to channel
+    private byte[] eol = System.getProperty("line.separator").getBytes(StandardCharsets.US_ASCII);
+    private boolean isTess2_0Format;
+    private boolean isWordStrFormat;
+
+    /**
+     * Creates a writer for a box file, replacing any existing content.
+     *
+     * @param boxFile
+     * @throws IOException
+     */
+    public BoxFileWriter(File boxFile) throws IOException {
+        this(FileChannel.open(boxFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Creates a writer for UTF-8 encoded box data.
+     *
+     * @param out
+     */
+    public BoxFileWriter(OutputStream out) {
+        this(Channels.newChannel(out));
+    }
+
+    /**
+     * Creates a writer for UTF-8 encoded box data.
+     *
+     * @param channel
+     */
+    public BoxFileWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Sets line terminator. Defaults to the platform line separator.
+     *
+     * @param eol
+     */
+    public void setEol(String eol) {
+        this.eol = eol.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Sets whether to write in Tess 2.0x format, i.e., without page number for
+     * the first page.
+     *
+     * @param isTess2_0Format
+     */
+    public void setTess2_0Format(boolean isTess2_0Format) {
+        this.isTess2_0Format = isTess2_0Format;
+    }
+
+    /**
+     * Sets whether to write in WordStr format.
+     *
+     * @param isWordStrFormat
+     */
+    public void setWordStrFormat(boolean isWordStrFormat) {
+        this.isWordStrFormat = isWordStrFormat;
+    }
+
+    /**
+     * Writes boxes of a page. Note that the coordinate system used in the box
+     * file has (0,0) at the bottom-left.
+     *
+     * @param boxes boxes of the page
+     * @param pageIndex page number
+     * @param pageHeight height of the page image, for flipping y-coordinates
+     * @throws IOException
+     */
+    public void writePage(TessBoxCollection boxes, int pageIndex, int pageHeight) throws IOException {
+        for (TessBox box : boxes.toList()) {
+            writeBox(box, pageIndex, pageHeight);
+        }
+        flush();
+    }
+
+    /**
+     * Writes a box.
+     *
+     * @param box
+     * @param pageIndex page number
+     * @param pageHeight height of the page image, for flipping y-coordinates
+     * @throws IOException
+     */
+    public void writeBox(TessBox box, int pageIndex, int pageHeight) throws IOException {
+        Rectangle2D rect = box.getRect();
+        String chrs = box.getCharacter();
+        ensureCapacity(chrs.length() * 3 + WORDSTR_BYTES.length + 6 * 24 + eol.length);
+        int lineStart = count;
+
+        boolean wordStr = isWordStrFormat && !chrs.equals("\t");
+        if (wordStr) {
+            System.arraycopy(WORDSTR_BYTES, 0, buf, count, WORDSTR_BYTES.length);
+            count += WORDSTR_BYTES.length;
+        } else {
+            putString(chrs);
+        }
+        buf[count++] = ' ';
+        putRounded(rect.getMinX());
+        buf[count++] = ' ';
+        putRounded(pageHeight - rect.getMinY() - rect.getHeight());
+        buf[count++] = ' ';
+        putRounded(rect.getMinX() + rect.getWidth());
+        buf[count++] = ' ';
+        putRounded(pageHeight - rect.getMinY());
+        buf[count++] = ' ';
+        putLong(pageIndex);
+        if (wordStr) {
+            buf[count++] = ' ';
+            buf[count++] = '#';
+            putString(chrs);
+        }
+
+        // strip the ending zero
+        if (isTess2_0Format && count - lineStart >= 2 && buf[count - 1] == '0' && buf[count - 2] == ' ') {
+            count -= 2;
+        }
+
+        System.arraycopy(eol, 0, buf, count, eol.length);
+        count += eol.length;
+
+        if (count >= BUFFER_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Copies a page verbatim from the box file it was read from, appending a
+     * line terminator if its last line has none.
+     *
+     * @param src source box file
+     * @param start start offset of the page in the source
+     * @param end end offset of the page in the source
+     * @throws IOException
+     */
+    public void copyPage(FileChannel src, long start, long end) throws IOException {
+        if (end <= start) {
+            return;
+        }
+        flush();
+        long position = start;
+        while (position < end) {
+            long n = src.transferTo(position, end - position, channel);
+            if (n <= 0) {
+                throw new EOFException("Box file truncated at offset " + position);
+            }
+            position += n;
+        }
+        flushed += end - start;
+
+        ByteBuffer last = ByteBuffer.allocate(1);
+        src.read(last, end - 1);
+        byte b = last.get(0);
+        if (b != '\n' && b != '\r') {
+            System.arraycopy(eol, 0, buf, count, eol.length);
+            count += eol.length;
+        }
+    }
+
+    /**
+     * Gets number of bytes written so far, including buffered ones.
+     *
+     * @return byte offset of the next byte to be written
+     */
+    public long getOffset() {
+        return flushed + count;
+    }
+
+    /**
+     * Writes buffered data to the channel.
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(buf, 0, count);
+        while (bb.hasRemaining()) {
+            channel.write(bb);
+        }
+        flushed += count;
+        count = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Appends a coordinate rounded the same way as <code>%.0f</code>.
+     */
+    private void putRounded(double d) {
+        if (Double.isNaN(d) || Double.isInfinite(d) || Math.abs(d) >= Long.MAX_VALUE) {
+            putString(String.format("%.0f", d));
+            return;
+        }
+        double a = Math.abs(d);
+        long value = (long) a;
+        if (a - value >= 0.5) {
+            value++; // round half up
+        }
+        if (d < 0 || (d == 0 && 1 / d < 0)) {
+            buf[count++] = '-';
+        }
+        putLong(value);
+    }
+
+    private void putLong(long value) {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                putString(Long.toString(value));
+                return;
+            }
+            buf[count++] = '-';
+            value = -value;
+        }
+        int start = count;
+        do {
+            buf[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        // reverse digits
+        for (int i = start, j = count - 1; i < j; i++, j--) {
+            byte t = buf[i];
+            buf[i] = buf[j];
+            buf[j] = t;
+        }
+    }
+
+    /**
+     * Appends UTF-8 encoded string. Unpaired surrogates are replaced by '?',
+     * as <code>String.getBytes</code> does.
+     */
+    private void putString(String s) {
+        ensureCapacity(s.length() * 3);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buf[count++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[count++] = (byte) (0xC0 | (c >> 6));
+                buf[count++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf[count++] = (byte) (0xF0 | (cp >> 18));
+                buf[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buf[count++] = '?';
+            } else {
+                buf[count++] = (byte) (0xE0 | (c >> 12));
+                buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void ensureCapacity(int needed) {
+        if (count + needed > buf.length) {
+            byte[] newBuf = new byte[Math.max(buf.length * 2, count + needed)];
+            System.arraycopy(buf, 0, newBuf, 0, count);
+            buf = newBuf;
+        }
+    }
+}
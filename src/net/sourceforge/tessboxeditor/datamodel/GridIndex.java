@@ -0,0 +1,142 @@
+/**
+ * Copyright @ 2016 Quan Nguyen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sourceforge.tessboxeditor.datamodel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javafx.geometry.Rectangle2D;
+
+/**
+ * Uniform grid spatial index of boxes. Each box is registered in every cell
+ * its bounding rectangle overlaps, so point and rectangle queries only need to
+ * examine the boxes of the cells they touch.
+ */
+class GridIndex {
+
+    private static final int CELL_SIZE = 64;
+
+    private final Map<Long, List<TessBox>> cells = new HashMap<Long, List<TessBox>>();
+
+    /**
+     * Registers a box under the given bounds.
+     *
+     * @param box
+     * @param rect bounds of the box
+     */
+    void insert(TessBox box, Rectangle2D rect) {
+        int x1 = cell(rect.getMinX()), x2 = cell(rect.getMaxX());
+        int y1 = cell(rect.getMinY()), y2 = cell(rect.getMaxY());
+        for (int cx = x1; cx <= x2; cx++) {
+            for (int cy = y1; cy <= y2; cy++) {
+                List<TessBox> bucket = cells.get(key(cx, cy));
+                if (bucket == null) {
+                    bucket = new ArrayList<TessBox>(4);
+                    cells.put(key(cx, cy), bucket);
+                }
+                bucket.add(box);
+            }
+        }
+    }
+
+    /**
+     * Unregisters a box that was inserted under the given bounds.
+     *
+     * @param box
+     * @param rect bounds the box was inserted with
+     */
+    void remove(TessBox box, Rectangle2D rect) {
+        int x1 = cell(rect.getMinX()), x2 = cell(rect.getMaxX());
+        int y1 = cell(rect.getMinY()), y2 = cell(rect.getMaxY());
+        for (int cx = x1; cx <= x2; cx++) {
+            for (int cy = y1; cy <= y2; cy++) {
+                Long key = key(cx, cy);
+                List<TessBox> bucket = cells.get(key);
+                if (bucket == null) {
+                    continue;
+                }
+                for (int i = bucket.size() - 1; i >= 0; i--) {
+                    if (bucket.get(i) == box) {
+                        bucket.remove(i);
+                        break;
+                    }
+                }
+                if (bucket.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all boxes.
+     */
+    void clear() {
+        cells.clear();
+    }
+
+    /**
+     * Gets the boxes that may contain a point. Candidates must still be tested
+     * against their actual bounds.
+     *
+     * @param x
+     * @param y
+     * @return candidate boxes; not to be modified
+     */
+    List<TessBox> candidates(double x, double y) {
+        List<TessBox> bucket = cells.get(key(cell(x), cell(y)));
+        return bucket != null ? bucket : Collections.<TessBox>emptyList();
+    }
+
+    /**
+     * Gets the boxes whose bounds intersect a rectangle, each reported once.
+     *
+     * @param rect
+     * @return boxes in no particular order
+     */
+    List<TessBox> query(Rectangle2D rect) {
+        List<TessBox> result = new ArrayList<TessBox>();
+        Set<TessBox> seen = Collections.newSetFromMap(new IdentityHashMap<TessBox, Boolean>());
+        int x1 = cell(rect.getMinX()), x2 = cell(rect.getMaxX());
+        int y1 = cell(rect.getMinY()), y2 = cell(rect.getMaxY());
+        for (int cx = x1; cx <= x2; cx++) {
+            for (int cy = y1; cy <= y2; cy++) {
+                List<TessBox> bucket = cells.get(key(cx, cy));
+                if (bucket == null) {
+                    continue;
+                }
+                for (TessBox box : bucket) {
+                    if (box.getRect().intersects(rect) && seen.add(box)) {
+                        result.add(box);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int cell(double coord) {
+        return (int) Math.floor(coord / CELL_SIZE);
+    }
+
+    private static Long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+}
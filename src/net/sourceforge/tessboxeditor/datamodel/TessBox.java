@@ -33,6 +33,8 @@ public class TessBox {
     private final SimpleIntegerProperty height;
     private short page;
     private boolean selected;
+    TessBoxCollection owner; // collection indexing and tracking this box
+    int index; // position in owner list; valid only below owner's validFrom
 
     public TessBox(String chrs, Rectangle2D rect, short page) {
         this.chrs = new SimpleStringProperty(chrs);
@@ -59,7 +61,13 @@ public class TessBox {
      * @param selected the selected to set
      */
     public void setSelected(boolean selected) {
+        if (this.selected == selected) {
+            return;
+        }
         this.selected = selected;
+        if (owner != null) {
+            owner.selectionChanged(this);
+        }
     }
 
     /**
@@ -108,7 +116,11 @@ public class TessBox {
      * @param rect the rectangle to set
      */
     public void setRect(Rectangle2D rect) {
+        Rectangle2D oldRect = this.rect;
         this.rect = rect;
+        if (owner != null) {
+            owner.boxMoved(this, oldRect);
+        }
         this.x.set((int) rect.getMinX());
         this.y.set((int) rect.getMinY());
         this.width.set((int) rect.getWidth());
@@ -131,6 +143,9 @@ public class TessBox {
      */
     public void setCharacter(String value) {
         this.chrs.set(value);
+        if (owner != null) {
+            owner.setModified(true);
+        }
     }
 
     public SimpleStringProperty characterProperty() {
@@ -16,8 +16,14 @@
 package net.sourceforge.tessboxeditor.datamodel;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.geometry.Point2D;
 import javafx.geometry.Rectangle2D;
@@ -27,12 +33,47 @@ import javafx.geometry.Rectangle2D;
  */
 public class TessBoxCollection {
 
-    private String appendingSymbols;
-    private String prependingSymbols;
+    private BitSet appendingSymbols; // code points
+    private BitSet prependingSymbols;
     private final ObservableList<TessBox> list; // = FXCollections.observableArrayList();
+    private final GridIndex index = new GridIndex();
+    private final Set<TessBox> selection = new LinkedHashSet<TessBox>();
+    private int validFrom; // list positions cached in boxes are valid below this
+    private boolean modified;
 
     public TessBoxCollection() {
         list = FXCollections.observableArrayList();
+        // keep spatial index in sync with direct list modifications too
+        list.addListener((ListChangeListener.Change<? extends TessBox> change) -> {
+            modified = true;
+            while (change.next()) {
+                validFrom = Math.min(validFrom, change.getFrom());
+                if (change.wasPermutated()) {
+                    continue;
+                }
+                for (TessBox box : change.getRemoved()) {
+                    if (box.owner == this) {
+                        index.remove(box, box.getRect());
+                        selection.remove(box);
+                        box.owner = null;
+                    }
+                }
+                for (TessBox box : change.getAddedSubList()) {
+                    if (box.owner != this) {
+                        if (box.owner != null) {
+                            box.owner.index.remove(box, box.getRect());
+                            box.owner.selection.remove(box);
+                        }
+                        index.insert(box, box.getRect());
+                        box.index = Integer.MAX_VALUE; // not numbered yet
+                        if (box.isSelected()) {
+                            selection.add(box);
+                        }
+                        box.owner = this;
+                    }
+                }
+            }
+        });
     }
 
     /**
@@ -58,7 +99,7 @@ public class TessBoxCollection {
      * Deselects all boxes.
      */
     public void deselectAll() {
-        for (TessBox box : list) {
+        for (TessBox box : selection.toArray(new TessBox[selection.size()])) {
             box.setSelected(false);
         }
     }
@@ -79,12 +120,14 @@ public class TessBoxCollection {
      * @return
      */
     public TessBox select(TessBox findBox) {
-        for (TessBox box : list) {
-            if (box.getRect().equals(findBox.getRect())) {
-                return box;
+        Rectangle2D rect = findBox.getRect();
+        TessBox found = null;
+        for (TessBox box : index.candidates(rect.getMinX(), rect.getMinY())) {
+            if (box.getRect().equals(rect)) {
+                found = first(found, box);
             }
         }
-        return null;
+        return found;
     }
 
     /**
@@ -101,7 +144,7 @@ public class TessBoxCollection {
             searchList = list;
         } else {
             TessBox lastSelectedBox = selectedBoxes.get(selectedBoxes.size() - 1);
-            int index = list.indexOf(lastSelectedBox);
+            int index = indexOf(lastSelectedBox);
             searchList = list.subList(index + 1, list.size());
         }
 
@@ -113,6 +156,27 @@ public class TessBoxCollection {
         return null;
     }
 
+    /**
+     * Gets the position of a box in the list. Positions are cached in the
+     * boxes and renumbered lazily from the first modified position, so lookups
+     * are constant time between list modifications.
+     *
+     * @param box
+     * @return index of the box, or -1 if not in the list
+     */
+    public int indexOf(TessBox box) {
+        if (box == null || box.owner != this) {
+            return -1;
+        }
+        if (box.index >= validFrom) {
+            for (int i = validFrom; i < list.size(); i++) {
+                list.get(i).index = i;
+            }
+            validFrom = list.size();
+        }
+        return box.index;
+    }
+
     /**
      * Gets the box hit by mouse click.
      *
@@ -120,12 +184,13 @@ public class TessBoxCollection {
      * @return
      */
     public TessBox hitObject(Point2D p) {
-        for (TessBox box : list) {
+        TessBox found = null;
+        for (TessBox box : index.candidates(p.getX(), p.getY())) {
             if (box.contains(p)) {
-                return box;
+                found = first(found, box);
             }
         }
-        return null;
+        return found;
     }
 
     /**
@@ -139,21 +204,101 @@ public class TessBoxCollection {
         return hitObject(new Point2D(x, y));
     }
 
+    /**
+     * Gets the boxes whose bounding rectangles intersect a given rectangle.
+     *
+     * @param rect
+     * @return boxes in no particular order
+     */
+    public List<TessBox> getBoxesIn(Rectangle2D rect) {
+        return index.query(rect);
+    }
+
+    /**
+     * Gets the one of two boxes that comes first in the list.
+     */
+    private TessBox first(TessBox found, TessBox box) {
+        if (found == null) {
+            return box;
+        }
+        return indexOf(box) < indexOf(found) ? box : found;
+    }
+
+    /**
+     * Updates spatial index after a box has been resized or moved.
+     *
+     * @param box
+     * @param oldRect previous bounds of the box
+     */
+    void boxMoved(TessBox box, Rectangle2D oldRect) {
+        index.remove(box, oldRect);
+        index.insert(box, box.getRect());
+        modified = true;
+    }
+
+    /**
+     * Whether boxes have been added, removed or changed since last cleared.
+     *
+     * @return
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * Sets modified state, e.g., to clear it after the page has been saved.
+     *
+     * @param modified
+     */
+    public void setModified(boolean modified) {
+        this.modified = modified;
+    }
+
     /**
      * Gets selected boxes.
      *
      * @return
      */
     public List<TessBox> getSelectedBoxes() {
-        List<TessBox> selected = new ArrayList<TessBox>();
-        for (TessBox box : list) {
-            if (box.isSelected()) {
-                selected.add(box);
-            }
+        List<TessBox> selected = new ArrayList<TessBox>(selection);
+        if (selected.size() > 1) {
+            // in list order
+            Collections.sort(selected, Comparator.comparingInt(this::indexOf));
         }
         return selected;
     }
 
+    /**
+     * Gets number of selected boxes.
+     *
+     * @return
+     */
+    public int getSelectedCount() {
+        return selection.size();
+    }
+
+    /**
+     * Gets the selected box when exactly one box is selected.
+     *
+     * @return the box, or null if none or several are selected
+     */
+    public TessBox getSelectedBox() {
+        return selection.size() == 1 ? selection.iterator().next() : null;
+    }
+
+    /**
+     * Tracks selection state of a box.
+     *
+     * @param box
+     */
+    void selectionChanged(TessBox box) {
+        if (box.isSelected()) {
+            selection.add(box);
+        } else {
+            selection.remove(box);
+        }
+    }
+
     /**
      * Sets combining symbols.
      *
@@ -165,26 +310,63 @@ public class TessBoxCollection {
         }
         String[] str = combiningSymbols.split(";");
         if (str.length > 0) {
-            this.appendingSymbols = str[0];
+            this.appendingSymbols = toCodePointSet(str[0]);
         }
         if (str.length > 1) {
-            this.prependingSymbols = str[1];
+            this.prependingSymbols = toCodePointSet(str[1]);
+        }
+    }
+
+    /**
+     * Gets the set of code points of symbols, or null if there are none. As in
+     * a regex character class, <code>a-b</code> denotes a range of values; a
+     * dash is literal only as first or last symbol.
+     */
+    private static BitSet toCodePointSet(String symbols) {
+        if (symbols.trim().length() == 0) {
+            return null;
         }
+        BitSet set = new BitSet();
+        int[] cps = symbols.codePoints().toArray();
+        for (int i = 0; i < cps.length; i++) {
+            if (i + 2 < cps.length && cps[i + 1] == '-') {
+                if (cps[i] > cps[i + 2]) {
+                    throw new IllegalArgumentException("Illegal character range in combining symbols: "
+                            + new String(cps, i, 3));
+                }
+                set.set(cps[i], cps[i + 2] + 1);
+                i += 2;
+            } else {
+                set.set(cps[i]);
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Whether a value is a single one of given symbols.
+     */
+    private static boolean isSymbol(String value, BitSet symbols) {
+        if (symbols == null || value.isEmpty()) {
+            return false;
+        }
+        int cp = value.codePointAt(0);
+        return Character.charCount(cp) == value.length() && symbols.get(cp);
     }
 
     /**
      * Combines boxes that have the same coordinates or combining symbols with
      * main/base character. The new resultant value will be the combined values.
+     * The list is rebuilt in a single pass and replaced at once.
      */
     public void combineBoxes() {
+        List<TessBox> combined = new ArrayList<TessBox>(list.size());
         TessBox prev = null;
-        for (TessBox box : list.toArray(new TessBox[list.size()])) {
+        for (TessBox box : list) {
             if (prev != null && (box.getRect().equals(prev.getRect()) || prev.getRect().contains(box.getRect()))) {
-                list.remove(box);
                 prev.setCharacter(prev.getCharacter() + box.getCharacter());
-            } else if (prev != null && ((appendingSymbols != null && appendingSymbols.trim().length() > 0 && box.getCharacter().matches("[" + appendingSymbols + "]"))
-                    || (prependingSymbols != null && prependingSymbols.trim().length() > 0 && prev.getCharacter().matches("[" + prependingSymbols + "]")))) {
-                list.remove(box);
+            } else if (prev != null && (isSymbol(box.getCharacter(), appendingSymbols)
+                    || isSymbol(prev.getCharacter(), prependingSymbols))) {
                 prev.setCharacter(prev.getCharacter() + box.getCharacter());
                 Rectangle2D prevRect = prev.getRect();
                 Rectangle2D curRect = box.getRect();
@@ -194,9 +376,13 @@ public class TessBoxCollection {
                 double maxY = Math.max(prevRect.getMaxY(), curRect.getMaxY());
                 prev.setRect(new Rectangle2D(minX, minY, maxX - minX, maxY - minY));
             } else {
+                combined.add(box);
                 prev = box;
             }
         }
+        if (combined.size() < list.size()) {
+            list.setAll(combined);
+        }
     }
 
     /**
@@ -0,0 +1,193 @@
+/**
+ * Copyright @ 2016 Quan Nguyen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sourceforge.tessboxeditor.utilities;
+
+import java.util.Arrays;
+
+/**
+ * Levenshtein alignment of two token sequences, restricted to a diagonal band.
+ * The band starts narrow and is doubled until it is wide enough to hold an
+ * optimal alignment, so time and memory grow with sequence length times edit
+ * distance rather than with the product of the lengths.
+ */
+public class EditDistance {
+
+    private static final int MIN_BAND = 16;
+
+    private static final byte MATCH = 0;
+    private static final byte SUBSTITUTE = 1;
+    private static final byte DELETE = 2; // token of reference missing
+    private static final byte INSERT = 3; // extra token in hypothesis
+
+    private EditDistance() {
+    }
+
+    /**
+     * An alignment: pairs of aligned token indices, with -1 marking a gap.
+     */
+    public static class Alignment {
+
+        private final int distance;
+        private final int[] refIndices;
+        private final int[] hypIndices;
+
+        Alignment(int distance, int[] refIndices, int[] hypIndices) {
+            this.distance = distance;
+            this.refIndices = refIndices;
+            this.hypIndices = hypIndices;
+        }
+
+        /**
+         * @return the number of edits
+         */
+        public int getDistance() {
+            return distance;
+        }
+
+        /**
+         * @return number of aligned pairs
+         */
+        public int size() {
+            return refIndices.length;
+        }
+
+        /**
+         * @param i pair index
+         * @return index into the reference, or -1 for an inserted token
+         */
+        public int getRefIndex(int i) {
+            return refIndices[i];
+        }
+
+        /**
+         * @param i pair index
+         * @return index into the hypothesis, or -1 for a deleted token
+         */
+        public int getHypIndex(int i) {
+            return hypIndices[i];
+        }
+    }
+
+    /**
+     * Aligns a hypothesis with a reference at minimum edit distance.
+     *
+     * @param ref reference tokens
+     * @param hyp hypothesis tokens
+     * @return alignment
+     */
+    public static Alignment align(int[] ref, int[] hyp) {
+        int n = ref.length;
+        int m = hyp.length;
+        int maxBand = Math.max(n, m);
+        int band = Math.min(Math.max(Math.abs(n - m), MIN_BAND), maxBand);
+        while (true) {
+            Alignment alignment = align(ref, hyp, band);
+            // a path leaving the band costs more than the band width
+            if (alignment != null && (alignment.distance <= band || band >= maxBand)) {
+                return alignment;
+            }
+            band = Math.min(band * 2, maxBand);
+        }
+    }
+
+    /**
+     * Aligns within cells |i - j| &lt;= band; null if no path fits.
+     */
+    private static Alignment align(int[] ref, int[] hyp, int band) {
+        int n = ref.length;
+        int m = hyp.length;
+        if (Math.abs(n - m) > band) {
+            return null;
+        }
+        int width = 2 * band + 1;
+        final int inf = Integer.MAX_VALUE / 2;
+        byte[] ops = new byte[(n + 1) * width]; // cell (i, j) at i * width + j - i + band
+        int[] prev = new int[width];
+        int[] cur = new int[width];
+        Arrays.fill(prev, inf);
+
+        for (int j = 0; j <= Math.min(m, band); j++) {
+            prev[j + band] = j;
+            ops[j + band] = INSERT;
+        }
+
+        for (int i = 1; i <= n; i++) {
+            Arrays.fill(cur, inf);
+            int from = Math.max(0, i - band);
+            int to = Math.min(m, i + band);
+            for (int j = from; j <= to; j++) {
+                int d = j - i + band;
+                int best;
+                byte op;
+                if (j == 0) {
+                    best = i;
+                    op = DELETE;
+                } else {
+                    // diagonal (i-1, j-1) is at the same offset in the previous row
+                    boolean same = ref[i - 1] == hyp[j - 1];
+                    best = prev[d] + (same ? 0 : 1);
+                    op = same ? MATCH : SUBSTITUTE;
+                    if (d > 0 && cur[d - 1] + 1 < best) { // (i, j-1)
+                        best = cur[d - 1] + 1;
+                        op = INSERT;
+                    }
+                }
+                if (d + 1 < width && prev[d + 1] + 1 < best) { // (i-1, j)
+                    best = prev[d + 1] + 1;
+                    op = DELETE;
+                }
+                cur[d] = best;
+                ops[i * width + d] = op;
+            }
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+
+        int distance = prev[m - n + band];
+        if (distance >= inf) {
+            return null;
+        }
+
+        // trace back from (n, m)
+        int[] refIndices = new int[n + m];
+        int[] hypIndices = new int[n + m];
+        int k = n + m;
+        int i = n;
+        int j = m;
+        while (i > 0 || j > 0) {
+            k--;
+            switch (ops[i * width + j - i + band]) {
+                case MATCH:
+                case SUBSTITUTE:
+                    refIndices[k] = --i;
+                    hypIndices[k] = --j;
+                    break;
+                case DELETE:
+                    refIndices[k] = --i;
+                    hypIndices[k] = -1;
+                    break;
+                default:
+                    refIndices[k] = -1;
+                    hypIndices[k] = --j;
+                    break;
+            }
+        }
+        return new Alignment(distance,
+                Arrays.copyOfRange(refIndices, k, n + m),
+                Arrays.copyOfRange(hypIndices, k, n + m));
+    }
+}
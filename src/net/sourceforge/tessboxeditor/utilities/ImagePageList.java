@@ -0,0 +1,293 @@
+/**
+ * Copyright @ 2016 Quan Nguyen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sourceforge.tessboxeditor.utilities;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import net.sourceforge.tess4j.util.ImageIOHelper;
+
+/**
+ * Read-only list of the pages of a (multi-page) image file. The image
+ * directory is read once; pages are decoded on demand through an ImageIO
+ * reader and kept in a bounded LRU cache, while the next page is prefetched in
+ * the background.
+ */
+public class ImagePageList extends AbstractList<BufferedImage> implements Closeable {
+
+    private static final int DEFAULT_CACHE_SIZE = 3;
+
+    private final File imageFile;
+    private final boolean tempFile;
+    private final ImageInputStream iis;
+    private final ImageReader reader;
+    private final int numPages;
+    private final int[] widths;
+    private final int[] heights;
+    private final Map<Integer, FutureTask<BufferedImage>> cache;
+    private final ExecutorService prefetcher;
+    private volatile boolean closed;
+
+    private final static Logger logger = Logger.getLogger(ImagePageList.class.getName());
+
+    /**
+     * Opens an image file. PDF files are first converted to TIFF.
+     *
+     * @param file image file
+     * @throws IOException
+     */
+    public ImagePageList(File file) throws IOException {
+        this(file, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Opens an image file. PDF files are first converted to TIFF.
+     *
+     * @param file image file
+     * @param cacheSize maximum number of decoded pages held in memory
+     * @throws IOException
+     */
+    public ImagePageList(File file, final int cacheSize) throws IOException {
+        imageFile = ImageIOHelper.getImageFile(file);
+        tempFile = !imageFile.equals(file);
+
+        String imageFileFormat = ImageIOHelper.getImageFileFormat(imageFile);
+        Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName(imageFileFormat);
+        if (!readers.hasNext()) {
+            throw new RuntimeException("Unsupported image format. May need to install JAI Image I/O package.\nhttps://github.com/jai-imageio/jai-imageio-core");
+        }
+        reader = readers.next();
+        iis = ImageIO.createImageInputStream(imageFile);
+        if (iis == null) {
+            reader.dispose();
+            throw new IOException("Cannot open " + imageFile.getName());
+        }
+        reader.setInput(iis);
+        try {
+            numPages = reader.getNumImages(true);
+        } catch (IOException | RuntimeException e) {
+            reader.dispose();
+            iis.close();
+            throw e;
+        }
+        widths = new int[numPages];
+        heights = new int[numPages];
+        Arrays.fill(heights, -1);
+
+        cache = new LinkedHashMap<Integer, FutureTask<BufferedImage>>(cacheSize + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, FutureTask<BufferedImage>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        prefetcher = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "ImagePageList-prefetch");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Gets the decoded image of a page, blocking until it is available.
+     *
+     * @param index page index
+     * @return page image
+     * @throws UncheckedIOException if the page cannot be decoded
+     */
+    @Override
+    public BufferedImage get(int index) {
+        rangeCheck(index);
+        FutureTask<BufferedImage> task;
+        boolean runHere = false;
+        synchronized (cache) {
+            task = cache.get(index);
+            if (task == null) {
+                task = newTask(index);
+                cache.put(index, task);
+                runHere = true;
+            }
+        }
+        if (runHere) {
+            task.run();
+        }
+        prefetch(index + 1);
+
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            synchronized (cache) {
+                cache.remove(index, task); // allow a retry
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause instanceof IOException) {
+                throw new UncheckedIOException((IOException) cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @Override
+    public int size() {
+        return numPages;
+    }
+
+    /**
+     * Gets the width of a page without decoding it.
+     *
+     * @param index page index
+     * @return width in pixels
+     */
+    public int getWidth(int index) {
+        readDimensions(index);
+        return widths[index];
+    }
+
+    /**
+     * Gets the height of a page without decoding it.
+     *
+     * @param index page index
+     * @return height in pixels
+     */
+    public int getHeight(int index) {
+        readDimensions(index);
+        return heights[index];
+    }
+
+    /**
+     * Gets the height of a page of an image list, without decoding the page if
+     * the list is an <code>ImagePageList</code>.
+     *
+     * @param imageList image list
+     * @param index page index
+     * @return height in pixels
+     */
+    public static int getHeight(List<BufferedImage> imageList, int index) {
+        if (imageList instanceof ImagePageList) {
+            return ((ImagePageList) imageList).getHeight(index);
+        }
+        return imageList.get(index).getHeight();
+    }
+
+    /**
+     * Releases the reader and the prefetch thread. Pages already decoded
+     * remain valid but no new pages can be read.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        prefetcher.shutdownNow();
+        synchronized (reader) {
+            reader.dispose();
+            try {
+                iis.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, e.getMessage(), e);
+            }
+        }
+        synchronized (cache) {
+            cache.clear();
+        }
+        if (tempFile) {
+            imageFile.delete(); // PDF converted to TIFF
+        }
+    }
+
+    private void prefetch(int index) {
+        if (closed || index >= numPages) {
+            return;
+        }
+        FutureTask<BufferedImage> task;
+        synchronized (cache) {
+            if (cache.containsKey(index)) {
+                return;
+            }
+            task = newTask(index);
+            cache.put(index, task);
+        }
+        try {
+            prefetcher.execute(task);
+        } catch (RuntimeException e) {
+            // rejected after close; page will be read on demand
+            synchronized (cache) {
+                cache.remove(index, task);
+            }
+        }
+    }
+
+    private FutureTask<BufferedImage> newTask(final int index) {
+        return new FutureTask<>(() -> {
+            synchronized (reader) {
+                if (closed) {
+                    throw new IOException("Image file is closed.");
+                }
+                BufferedImage bi = reader.read(index);
+                widths[index] = bi.getWidth();
+                heights[index] = bi.getHeight();
+                return bi;
+            }
+        });
+    }
+
+    private void readDimensions(int index) {
+        rangeCheck(index);
+        synchronized (reader) {
+            if (heights[index] >= 0) {
+                return;
+            }
+            try {
+                widths[index] = reader.getWidth(index);
+                heights[index] = reader.getHeight(index);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void rangeCheck(int index) {
+        if (index < 0 || index >= numPages) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + numPages);
+        }
+    }
+}
@@ -15,9 +15,14 @@
  */
 package net.sourceforge.tessboxeditor.utilities;
 
-import java.awt.Color;
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javafx.embed.swing.SwingFXUtils;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.image.Image;
 import javafx.scene.image.PixelReader;
@@ -26,6 +31,9 @@ import javafx.scene.image.WritableImage;
 
 public class ImageUtils {
 
+    private static final int NOISE_BAND_HEIGHT = 64; // rows per noise band
+    private static final int NOISE_BANDS_PER_TASK = 4;
+
     /**
      * Adds noise to an image. Adapted from an algorithm in
      * http://www.gutgames.com/post/Adding-Noise-to-an-Image-in-C.aspx
@@ -35,33 +43,87 @@ public class ImageUtils {
      * @return
      */
     public static BufferedImage addNoise(BufferedImage originalImage, int amount) {
-        BufferedImage targetImage = new BufferedImage(originalImage.getWidth(), originalImage.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
-        Random randomizer = new Random();
-        int n = amount * 2 + 1;
-
-        for (int x = 0; x < targetImage.getWidth(); ++x) {
-            for (int y = 0; y < targetImage.getHeight(); ++y) {
-                int rgb = originalImage.getRGB(x, y);
-                Color color = new Color(rgb);
-                // add random integers ranging from -amount to amount
-                int r = color.getRed() + randomizer.nextInt(n) - amount;
-                int g = color.getGreen() + randomizer.nextInt(n) - amount;
-                int b = color.getBlue() + randomizer.nextInt(n) - amount;
-                r = r > 255 ? 255 : r;
-                r = r < 0 ? 0 : r;
-                g = g > 255 ? 255 : g;
-                g = g < 0 ? 0 : g;
-                b = b > 255 ? 255 : b;
-                b = b < 0 ? 0 : b;
-
-                color = new Color(r, g, b);
-                targetImage.setRGB(x, y, color.getRGB());
-            }
+        return addNoise(originalImage, amount, new Random().nextLong());
+    }
+
+    /**
+     * Adds noise to an image, reproducibly for a given seed. Works on the bytes
+     * of an 8bpp grayscale raster; bands of rows are processed in parallel,
+     * each with its own random generator derived from the seed, so the result
+     * does not depend on scheduling.
+     *
+     * @param originalImage
+     * @param amount maximum deviation of a pixel value
+     * @param seed random seed
+     * @return grayscale image with noise
+     */
+    public static BufferedImage addNoise(BufferedImage originalImage, int amount, long seed) {
+        int width = originalImage.getWidth();
+        int height = originalImage.getHeight();
+        BufferedImage targetImage = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        if (originalImage.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            targetImage.getRaster().setRect(originalImage.getRaster());
+        } else {
+            Graphics2D g2d = targetImage.createGraphics();
+            g2d.drawImage(originalImage, 0, 0, null);
+            g2d.dispose();
+        }
+
+        if (amount != 0) {
+            byte[] data = ((DataBufferByte) targetImage.getRaster().getDataBuffer()).getData();
+            int bands = (height + NOISE_BAND_HEIGHT - 1) / NOISE_BAND_HEIGHT;
+            ForkJoinPool.commonPool().invoke(new NoiseTask(data, width, height, 0, bands, Math.abs(amount), seed));
         }
 
         return targetImage;
     }
 
+    /**
+     * Adds noise to a range of row bands of a grayscale raster.
+     */
+    private static class NoiseTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] data;
+        private final int width, height;
+        private final int fromBand, toBand;
+        private final int amount;
+        private final long seed;
+
+        NoiseTask(byte[] data, int width, int height, int fromBand, int toBand, int amount, long seed) {
+            this.data = data;
+            this.width = width;
+            this.height = height;
+            this.fromBand = fromBand;
+            this.toBand = toBand;
+            this.amount = amount;
+            this.seed = seed;
+        }
+
+        @Override
+        protected void compute() {
+            if (toBand - fromBand > NOISE_BANDS_PER_TASK) {
+                int mid = (fromBand + toBand) >>> 1;
+                invokeAll(new NoiseTask(data, width, height, fromBand, mid, amount, seed),
+                        new NoiseTask(data, width, height, mid, toBand, amount, seed));
+                return;
+            }
+
+            int n = amount * 2 + 1;
+            for (int band = fromBand; band < toBand; band++) {
+                SplittableRandom randomizer = new SplittableRandom(seed ^ (band * 0x9E3779B97F4A7C15L));
+                int start = band * NOISE_BAND_HEIGHT * width;
+                int end = Math.min(height, (band + 1) * NOISE_BAND_HEIGHT) * width;
+                for (int i = start; i < end; i++) {
+                    // add random integers ranging from -amount to amount
+                    int v = (data[i] & 0xFF) + randomizer.nextInt(n) - amount;
+                    data[i] = (byte) (v > 255 ? 255 : v < 0 ? 0 : v);
+                }
+            }
+        }
+    }
+
     /**
      * Gets a subimage for display in boxview.
      *
@@ -70,31 +132,43 @@ public class ImageUtils {
      * @param margin
      * @return
      */
-    public static Image getSubimage(Image image, Rectangle2D rect, int margin) {
-        double iconPosX = rect.getMinX();
-        double iconPosY = rect.getMinY();
+    public static Image getSubimage(BufferedImage image, Rectangle2D rect, int margin) {
+        int x = (int) Math.max(0, Math.min(image.getWidth() - 1, rect.getMinX() - margin));
+        int y = (int) Math.max(0, Math.min(image.getHeight() - 1, rect.getMinY() - margin));
 
-        double imageWidth = image.getWidth();
-        double imageHeight = image.getHeight();
+        double width = rect.getWidth() + margin * 2;
+        double height = rect.getHeight() + margin * 2;
 
-        double iconHeight = rect.getHeight();
-        double iconWidth = rect.getWidth();
-
-        double height = iconHeight + margin * 2;
-        double width = iconWidth + margin * 2;
-
-        while (width + iconPosX > image.getWidth() + 1) {
+        while (width + rect.getMinX() > image.getWidth() + 1) {
             width -= 1;
         }
 
-        while (height + iconPosY > image.getHeight() + 1) {
+        while (height + rect.getMinY() > image.getHeight() + 1) {
             height -= 1;
         }
 
-        WritableImage subImage = new WritableImage(image.getPixelReader(), (int) Math.max(0, Math.min(imageWidth - 1, iconPosX - margin)),
-                (int) Math.max(0, Math.min(imageHeight - 1, iconPosY - margin)), (int) width, (int) height);
+        int w = (int) Math.max(1, Math.min(width, image.getWidth() - x));
+        int h = (int) Math.max(1, Math.min(height, image.getHeight() - y));
+        return toFXImage(image, x, y, w, h);
+    }
 
-        return subImage;
+    /**
+     * Converts a region of an AWT image to a JavaFX image. Only the region is
+     * copied.
+     *
+     * @param image source image
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     * @return
+     */
+    public static Image toFXImage(BufferedImage image, int x, int y, int width, int height) {
+        BufferedImage region = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2d = region.createGraphics();
+        g2d.drawImage(image, -x, -y, null);
+        g2d.dispose();
+        return SwingFXUtils.toFXImage(region, null);
     }
 
     /**
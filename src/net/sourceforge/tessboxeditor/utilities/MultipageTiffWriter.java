@@ -0,0 +1,147 @@
+/**
+ * Copyright @ 2016 Quan Nguyen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sourceforge.tessboxeditor.utilities;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataFormatImpl;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Writes a multi-page TIFF image one page at a time. Each page is appended to
+ * the file as soon as it is written, as part of a write sequence, so pages
+ * need not be held in memory until the whole document is done, and appending
+ * does not walk the pages already written.
+ */
+public class MultipageTiffWriter implements Closeable {
+
+    private final ImageWriter writer;
+    private final ImageOutputStream ios;
+    private final ImageWriteParam param;
+    private int dpi = 300;
+    private int pageCount;
+
+    /**
+     * Creates a writer, replacing any existing file.
+     *
+     * @param tiffFile output file
+     * @param compressionType TIFF compression type, such as "LZW" or "CCITT
+     * T.6"
+     * @throws IOException
+     */
+    public MultipageTiffWriter(File tiffFile, String compressionType) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("tiff");
+        if (!writers.hasNext()) {
+            throw new RuntimeException("Need to install JAI Image I/O package.\nhttps://github.com/jai-imageio/jai-imageio-core");
+        }
+        writer = writers.next();
+        if (!writer.canWriteSequence()) {
+            writer.dispose();
+            throw new IOException("TIFF writer cannot write multi-page images.");
+        }
+        param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionType(compressionType);
+
+        tiffFile.delete(); // stream would not truncate an existing file
+        ios = ImageIO.createImageOutputStream(tiffFile);
+        if (ios == null) {
+            writer.dispose();
+            throw new IOException("Cannot create " + tiffFile.getName());
+        }
+        writer.setOutput(ios);
+    }
+
+    /**
+     * Sets resolution recorded for subsequent pages. Defaults to 300 DPI.
+     *
+     * @param dpi dots per inch
+     */
+    public void setDpi(int dpi) {
+        this.dpi = dpi;
+    }
+
+    /**
+     * Appends a page.
+     *
+     * @param image page image
+     * @throws IOException
+     */
+    public void writePage(BufferedImage image) throws IOException {
+        IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+        setDpi(metadata);
+        IIOImage iioImage = new IIOImage(image, null, metadata);
+        if (pageCount == 0) {
+            writer.prepareWriteSequence(null);
+        }
+        writer.writeToSequence(iioImage, param);
+        pageCount++;
+    }
+
+    /**
+     * Gets number of pages written so far.
+     *
+     * @return page count
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (pageCount > 0) {
+                writer.endWriteSequence();
+            }
+        } finally {
+            try {
+                ios.close();
+            } finally {
+                writer.dispose();
+            }
+        }
+    }
+
+    /**
+     * Records resolution in image metadata via the standard metadata format.
+     */
+    private void setDpi(IIOMetadata metadata) throws IOException {
+        if (!metadata.isStandardMetadataFormatSupported() || metadata.isReadOnly()) {
+            return;
+        }
+        String pixelSize = Double.toString(25.4 / dpi); // millimeters per pixel
+        IIOMetadataNode horiz = new IIOMetadataNode("HorizontalPixelSize");
+        horiz.setAttribute("value", pixelSize);
+        IIOMetadataNode vert = new IIOMetadataNode("VerticalPixelSize");
+        vert.setAttribute("value", pixelSize);
+        IIOMetadataNode dim = new IIOMetadataNode("Dimension");
+        dim.appendChild(horiz);
+        dim.appendChild(vert);
+        IIOMetadataNode root = new IIOMetadataNode(IIOMetadataFormatImpl.standardMetadataFormatName);
+        root.appendChild(dim);
+        metadata.mergeTree(IIOMetadataFormatImpl.standardMetadataFormatName, root);
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright @ 2016 Quan Nguyen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sourceforge.tessboxeditor.utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Breaks a flow of laid-out glyph boxes into pages in a single pass.
+ */
+public class Paginator {
+
+    private Paginator() {
+    }
+
+    /**
+     * Splits glyphs into pages. A page breaks before the first glyph whose
+     * bottom lies more than <code>pageHeight</code> below the top of the
+     * page's first glyph. Empty boxes, such as those of spaces, never cause a
+     * break and do not mark the top of a page.
+     *
+     * @param tops top of each glyph box, in flow order
+     * @param bottoms bottom of each glyph box, in flow order
+     * @param pageHeight printable height of a page
+     * @return page ranges as <code>{fromIndex, toIndex}</code> pairs, toIndex
+     * exclusive; at least one
+     */
+    public static List<int[]> paginate(double[] tops, double[] bottoms, double pageHeight) {
+        List<int[]> pages = new ArrayList<int[]>();
+        int start = 0;
+        double pageTop = Double.NaN; // top of first glyph on page
+
+        if (pageHeight > 0) {
+            for (int i = 0; i < bottoms.length; i++) {
+                if (bottoms[i] <= tops[i]) {
+                    continue; // empty box
+                }
+                if (Double.isNaN(pageTop)) {
+                    pageTop = tops[i];
+                } else if (bottoms[i] - pageTop > pageHeight) {
+                    pages.add(new int[]{start, i});
+                    start = i;
+                    pageTop = tops[i];
+                }
+            }
+        }
+
+        pages.add(new int[]{start, bottoms.length});
+        return pages;
+    }
+}
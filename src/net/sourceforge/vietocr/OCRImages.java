@@ -0,0 +1,225 @@
+/**
+ * Copyright @ 2016 Quan Nguyen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package net.sourceforge.vietocr;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.sourceforge.tess4j.Tesseract;
+
+/**
+ * Recognizes images in-process via Tess4J. Images are recognized in parallel
+ * on a pool of worker threads, each of which keeps its own initialized
+ * Tesseract engine for reuse across images, as an engine may be used by only
+ * one thread at a time.
+ */
+public class OCRImages extends OCR<BufferedImage> implements Closeable {
+
+    private final ExecutorService executor;
+    private final int nThreads;
+    private final ThreadLocal<Engine> engines = new ThreadLocal<Engine>();
+    private final List<Engine> allEngines = new ArrayList<Engine>();
+
+    private final static Logger logger = Logger.getLogger(OCRImages.class.getName());
+
+    /**
+     * Creates an OCR engine pool with one worker per available processor.
+     */
+    public OCRImages() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an OCR engine pool.
+     *
+     * @param nThreads number of worker threads, hence of Tesseract engines
+     */
+    public OCRImages(int nThreads) {
+        this.nThreads = Math.max(1, nThreads);
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(this.nThreads, r -> {
+            Thread t = new Thread(r, "OCRImages-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Gets number of worker threads.
+     *
+     * @return thread count
+     */
+    public int getThreadCount() {
+        return nThreads;
+    }
+
+    /**
+     * Recognizes images, in parallel.
+     *
+     * @param images list of images; may be a lazily decoding list, in which
+     * case each image is decoded by the worker recognizing it
+     * @return recognized text, in image order
+     * @throws Exception
+     */
+    @Override
+    public String recognizeText(List<BufferedImage> images) throws Exception {
+        List<Future<String>> results = submit(images);
+        StringBuilder sb = new StringBuilder();
+        try {
+            for (Future<String> result : results) {
+                sb.append(result.get());
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        } finally {
+            for (Future<String> result : results) {
+                result.cancel(true);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Queues images for recognition, so that several lists can be recognized
+     * at once and their results awaited individually.
+     *
+     * @param images list of images
+     * @return pending text of each image, in image order
+     */
+    public List<Future<String>> submit(final List<BufferedImage> images) {
+        final Rectangle roi = rect;
+        final String config = getDatapath() + "|" + getLanguage() + "|" + getPageSegMode();
+        List<Future<String>> results = new ArrayList<Future<String>>(images.size());
+        for (int i = 0; i < images.size(); i++) {
+            final int index = i;
+            results.add(executor.submit(() -> getEngine(config).recognize(images.get(index), roi)));
+        }
+        return results;
+    }
+
+    /**
+     * Gets the calling worker's engine, initializing it on first use or when
+     * the settings have changed.
+     */
+    private Engine getEngine(String config) {
+        Engine engine = engines.get();
+        if (engine != null && !engine.config.equals(config)) {
+            engine.close();
+            synchronized (allEngines) {
+                allEngines.remove(engine);
+            }
+            engine = null;
+        }
+        if (engine == null) {
+            engine = new Engine(config);
+            engine.setDatapath(getDatapath());
+            engine.setLanguage(getLanguage());
+            engine.setPageSegMode(Integer.parseInt(getPageSegMode()));
+            engine.open();
+            engines.set(engine);
+            synchronized (allEngines) {
+                allEngines.add(engine);
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Processes OCR for input file with specified output format.
+     *
+     * @param inputImage
+     * @param outputFile
+     * @throws Exception
+     */
+    @Override
+    public void processPages(File inputImage, File outputFile) throws Exception {
+        // not used
+    }
+
+    /**
+     * Stops the workers and releases their engines. A recognition in progress
+     * cannot be interrupted; if the workers do not finish in time, the engines
+     * are left alone rather than released while in use.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        boolean terminated = false;
+        try {
+            terminated = executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!terminated) {
+            logger.log(Level.WARNING, "OCR workers still busy; Tesseract engines not released.");
+            return;
+        }
+        synchronized (allEngines) {
+            for (Engine engine : allEngines) {
+                engine.close();
+            }
+            allEngines.clear();
+        }
+    }
+
+    /**
+     * A Tesseract engine that stays initialized across images, instead of
+     * being initialized and disposed of for each call.
+     */
+    private static class Engine extends Tesseract {
+
+        final String config;
+        private boolean open;
+
+        Engine(String config) {
+            this.config = config;
+        }
+
+        void open() {
+            init();
+            setVariables();
+            open = true;
+        }
+
+        String recognize(BufferedImage image, Rectangle roi) throws Exception {
+            setImage(image);
+            setROI(roi);
+            return getOCRText(null, 1);
+        }
+
+        synchronized void close() {
+            if (open) {
+                open = false;
+                dispose();
+            }
+        }
+    }
+}
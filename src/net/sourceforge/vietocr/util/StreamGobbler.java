@@ -5,26 +5,69 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * When Runtime.exec() won't.
  * http://www.javaworld.com/javaworld/jw-12-2000/jw-1229-traps.html
+ * <p>
+ * Output is passed on line by line as it is read; only the last lines are
+ * retained, in a ring buffer, for error messages.
  */
 public class StreamGobbler extends Thread {
 
+    public static final int DEFAULT_TAIL_LINES = 200;
+
     InputStream is;
-    StringBuilder outputMessage = new StringBuilder();
+    private final Consumer<String> lineConsumer;
+    private final String[] tail;
+    private int tailStart; // index of oldest retained line
+    private int tailCount;
+    private long lineCount;
 
     private final static Logger logger = Logger.getLogger(StreamGobbler.class.getName());
 
     public StreamGobbler(InputStream is) {
+        this(is, null, DEFAULT_TAIL_LINES);
+    }
+
+    /**
+     * Creates a gobbler that streams output lines.
+     *
+     * @param is stream to read
+     * @param lineConsumer receiver of each output line, called on the gobbler
+     * thread; may be null
+     * @param tailLines number of last lines to retain
+     */
+    public StreamGobbler(InputStream is, Consumer<String> lineConsumer, int tailLines) {
         this.is = is;
+        this.lineConsumer = lineConsumer;
+        this.tail = new String[Math.max(1, tailLines)];
+        setDaemon(true);
     }
 
-    public String getMessage() {
-        return outputMessage.toString();
+    /**
+     * Gets the last lines of output, each terminated by a newline.
+     *
+     * @return retained output
+     */
+    public synchronized String getMessage() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < tailCount; i++) {
+            sb.append(tail[(tailStart + i) % tail.length]).append("\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Gets number of lines read so far, including those no longer retained.
+     *
+     * @return line count
+     */
+    public synchronized long getLineCount() {
+        return lineCount;
     }
 
     @Override
@@ -35,10 +78,23 @@ public class StreamGobbler extends Thread {
             String line;
             while ((line = br.readLine()) != null) {
 //                System.out.println(line);
-                outputMessage.append(line).append("\n");
+                if (lineConsumer != null) {
+                    lineConsumer.accept(line);
+                }
+                append(line);
             }
         } catch (IOException ioe) {
             logger.log(Level.SEVERE, ioe.getMessage(), ioe);
         }
     }
+
+    private synchronized void append(String line) {
+        if (tailCount < tail.length) {
+            tail[(tailStart + tailCount++) % tail.length] = line;
+        } else {
+            tail[tailStart] = line; // overwrite oldest
+            tailStart = (tailStart + 1) % tail.length;
+        }
+        lineCount++;
+    }
 }